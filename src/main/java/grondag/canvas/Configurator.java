@@ -67,6 +67,13 @@ public class Configurator {
 	public static boolean clampExteriorVertices = DEFAULTS.clampExteriorVertices;
 	public static boolean fixLuminousBlockShading = DEFAULTS.fixLuminousBlockShading;
 	public static boolean terrainSetupOffThread = DEFAULTS.terrainSetupOffThread;
+	public static boolean parallelTerrainIteration = DEFAULTS.parallelTerrainIteration;
+	public static boolean temporalOcclusion = DEFAULTS.temporalOcclusion;
+	public static boolean coalesceRebuilds = DEFAULTS.coalesceRebuilds;
+	public static boolean deferWorldCopy = DEFAULTS.deferWorldCopy;
+	public static boolean incrementalRebuilds = DEFAULTS.incrementalRebuilds;
+	public static boolean compactTerrainVertex = DEFAULTS.compactTerrainVertex;
+	public static boolean parallelMainThreadRebuilds = DEFAULTS.parallelMainThreadRebuilds;
 	public static boolean cullEntityRender = DEFAULTS.cullEntityRender;
 	public static boolean greedyRenderThread = DEFAULTS.greedyRenderThread;
 	public static boolean forceJmxModelLoading = DEFAULTS.forceJmxModelLoading;
@@ -153,6 +160,13 @@ public class Configurator {
 		clampExteriorVertices = config.clampExteriorVertices;
 		fixLuminousBlockShading = config.fixLuminousBlockShading;
 		terrainSetupOffThread = config.terrainSetupOffThread;
+		parallelTerrainIteration = config.parallelTerrainIteration;
+		temporalOcclusion = config.temporalOcclusion;
+		coalesceRebuilds = config.coalesceRebuilds;
+		deferWorldCopy = config.deferWorldCopy;
+		incrementalRebuilds = config.incrementalRebuilds;
+		compactTerrainVertex = config.compactTerrainVertex;
+		parallelMainThreadRebuilds = config.parallelMainThreadRebuilds;
 		safeNativeMemoryAllocation = config.safeNativeMemoryAllocation;
 		enableVao = config.enableVao;
 		cullEntityRender = config.cullEntityRender;
@@ -200,6 +214,13 @@ public class Configurator {
 		config.clampExteriorVertices = clampExteriorVertices;
 		config.fixLuminousBlockShading = fixLuminousBlockShading;
 		config.terrainSetupOffThread = terrainSetupOffThread;
+		config.parallelTerrainIteration = parallelTerrainIteration;
+		config.temporalOcclusion = temporalOcclusion;
+		config.coalesceRebuilds = coalesceRebuilds;
+		config.deferWorldCopy = deferWorldCopy;
+		config.incrementalRebuilds = incrementalRebuilds;
+		config.compactTerrainVertex = compactTerrainVertex;
+		config.parallelMainThreadRebuilds = parallelMainThreadRebuilds;
 		config.safeNativeMemoryAllocation = safeNativeMemoryAllocation;
 		config.enableVao = enableVao;
 		config.cullEntityRender = cullEntityRender;
@@ -452,6 +473,58 @@ public class Configurator {
 			})
 			.build());
 
+		tweaks.addEntry(ENTRY_BUILDER
+			.startBooleanToggle(new TranslatableText("config.canvas.value.parallel_terrain_iteration"), parallelTerrainIteration)
+			.setDefaultValue(DEFAULTS.parallelTerrainIteration)
+			.setTooltip(parse("config.canvas.help.parallel_terrain_iteration"))
+			.setSaveConsumer(b -> parallelTerrainIteration = b)
+			.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+			.startBooleanToggle(new TranslatableText("config.canvas.value.temporal_occlusion"), temporalOcclusion)
+			.setDefaultValue(DEFAULTS.temporalOcclusion)
+			.setTooltip(parse("config.canvas.help.temporal_occlusion"))
+			.setSaveConsumer(b -> temporalOcclusion = b)
+			.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+			.startBooleanToggle(new TranslatableText("config.canvas.value.coalesce_rebuilds"), coalesceRebuilds)
+			.setDefaultValue(DEFAULTS.coalesceRebuilds)
+			.setTooltip(parse("config.canvas.help.coalesce_rebuilds"))
+			.setSaveConsumer(b -> coalesceRebuilds = b)
+			.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+			.startBooleanToggle(new TranslatableText("config.canvas.value.defer_world_copy"), deferWorldCopy)
+			.setDefaultValue(DEFAULTS.deferWorldCopy)
+			.setTooltip(parse("config.canvas.help.defer_world_copy"))
+			.setSaveConsumer(b -> deferWorldCopy = b)
+			.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+			.startBooleanToggle(new TranslatableText("config.canvas.value.incremental_rebuilds"), incrementalRebuilds)
+			.setDefaultValue(DEFAULTS.incrementalRebuilds)
+			.setTooltip(parse("config.canvas.help.incremental_rebuilds"))
+			.setSaveConsumer(b -> incrementalRebuilds = b)
+			.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+			.startBooleanToggle(new TranslatableText("config.canvas.value.compact_terrain_vertex"), compactTerrainVertex)
+			.setDefaultValue(DEFAULTS.compactTerrainVertex)
+			.setTooltip(parse("config.canvas.help.compact_terrain_vertex"))
+			.setSaveConsumer(b -> {
+				reload |= compactTerrainVertex != b;
+				compactTerrainVertex = b;
+			})
+			.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+			.startBooleanToggle(new TranslatableText("config.canvas.value.parallel_main_thread_rebuilds"), parallelMainThreadRebuilds)
+			.setDefaultValue(DEFAULTS.parallelMainThreadRebuilds)
+			.setTooltip(parse("config.canvas.help.parallel_main_thread_rebuilds"))
+			.setSaveConsumer(b -> parallelMainThreadRebuilds = b)
+			.build());
+
 		tweaks.addEntry(ENTRY_BUILDER
 			.startBooleanToggle(new TranslatableText("config.canvas.value.safe_native_allocation"), safeNativeMemoryAllocation)
 			.setDefaultValue(DEFAULTS.safeNativeMemoryAllocation)
@@ -696,6 +769,20 @@ public class Configurator {
 		boolean fixLuminousBlockShading = true;
 		@Comment("Terrain setup done off the main render thread. Increases FPS when moving. May see occasional flashes of blank chunks")
 		boolean terrainSetupOffThread = true;
+		@Comment("Splits large steps of the terrain visibility search across multiple threads. Helps at high render distance.")
+		boolean parallelTerrainIteration = true;
+		@Comment("Reuse stable visible occlusion results after small camera movement. May draw a few hidden regions.")
+		boolean temporalOcclusion = true;
+		@Comment("Delays rebuilds of regions that change constantly (redstone clocks, farms) so repeated changes share one rebuild. Player edits are never delayed.")
+		boolean coalesceRebuilds = true;
+		@Comment("Snapshot chunk storage on main thread and unpack on workers.")
+		boolean deferWorldCopy = true;
+		@Comment("Re-tessellate only changed parts of nearby regions.")
+		boolean incrementalRebuilds = true;
+		@Comment("Use 24-byte vertex format for solid terrain.")
+		boolean compactTerrainVertex = true;
+		@Comment("Splits near-region rebuilds done on the render thread across worker threads. Reduces stalls when many nearby regions change.")
+		boolean parallelMainThreadRebuilds = true;
 		@Comment("Use Vertex Array Objects if available. VAOs generally improve performance when they are supported.")
 		boolean enableVao = true;
 		@Comment("Use more efficient entity culling. Improves framerate in most scenes.")
@@ -58,6 +58,8 @@ public abstract class MutableQuadViewImpl extends QuadViewImpl implements QuadEm
 	public final float[] ao = new float[4];
 	// UGLY - need a lighting result class?
 	public LightmapHd hdLight = null;
+	// orientation of hdLight relative to this quad's face
+	public int hdLightTransform = 0;
 
 	public final void begin(int[] data, int baseIndex) {
 		this.data = data;
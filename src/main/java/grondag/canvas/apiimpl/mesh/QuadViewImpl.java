@@ -405,16 +405,28 @@ public class QuadViewImpl implements QuadView {
 		return data[baseIndex + HEADER_SPRITE];
 	}
 
-	public void transformAndAppend(final int vertexIndex, final Matrix4fExt matrix, final int[] appendData, final int targetIndex) {
+	/**
+	 * @param isTranslation True if matrix is known to be a pure translation, as in terrain.
+	 * Translation is then applied with adds only. Output is the same as the full transform.
+	 */
+	public void transformAndAppend(final int vertexIndex, final Matrix4fExt matrix, boolean isTranslation, final int[] appendData, final int targetIndex) {
 		final int[] data = this.data;
 		final int index = baseIndex + vertexIndex * BASE_VERTEX_STRIDE + VERTEX_X;
 		final float x = Float.intBitsToFloat(data[index]);
 		final float y = Float.intBitsToFloat(data[index + 1]);
 		final float z = Float.intBitsToFloat(data[index + 2]);
 
-		final float xOut = matrix.a00() * x + matrix.a01() * y + matrix.a02() * z + matrix.a03();
-		final float yOut = matrix.a10() * x + matrix.a11() * y + matrix.a12() * z + matrix.a13();
-		final float zOut = matrix.a20() * x + matrix.a21() * y + matrix.a22() * z + matrix.a23();
+		final float xOut, yOut, zOut;
+
+		if (isTranslation) {
+			xOut = x + matrix.a03();
+			yOut = y + matrix.a13();
+			zOut = z + matrix.a23();
+		} else {
+			xOut = matrix.a00() * x + matrix.a01() * y + matrix.a02() * z + matrix.a03();
+			yOut = matrix.a10() * x + matrix.a11() * y + matrix.a12() * z + matrix.a13();
+			zOut = matrix.a20() * x + matrix.a21() * y + matrix.a22() * z + matrix.a23();
+		}
 
 		appendData[targetIndex] = Float.floatToRawIntBits(xOut);
 		appendData[targetIndex + 1] = Float.floatToRawIntBits(yOut);
@@ -72,6 +72,8 @@ public abstract class AbstractRenderContext implements RenderContext {
 	};
 	protected Matrix4f matrix;
 	protected Matrix3fExt normalMatrix;
+	/** True when matrix only translates and normal matrix is identity. */
+	protected boolean isTranslation = false;
 	protected int overlay;
 	protected MaterialMap materialMap = defaultMap;
 	protected boolean isFluidModel = false;
@@ -199,6 +201,10 @@ public abstract class AbstractRenderContext implements RenderContext {
 		return normalMatrix;
 	}
 
+	public final boolean isTranslation() {
+		return isTranslation;
+	}
+
 	protected abstract BlendMode defaultBlendMode();
 
 	public final void renderQuad() {
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.apiimpl.rendercontext;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import grondag.canvas.apiimpl.mesh.MeshEncodingHelper;
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.fabric.api.renderer.v1.material.BlendMode;
+import net.fabricmc.fabric.api.renderer.v1.model.ModelHelper;
+
+/**
+ * Holds quads of a static vanilla model already converted to Canvas encoding, with
+ * material and blend mode resolved and geometry flags computed.  One entry for
+ * each AO / default blend mode combination because those select the material.
+ *
+ * <p>Entries are immutable once published. Two threads may build the same entry
+ * concurrently, in which case the results are identical and either one is kept.
+ */
+public final class BakedQuadCache {
+	static final int FACE_COUNT = ModelHelper.NULL_FACE_ID + 1;
+	private static final int VARIANT_COUNT = BlendMode.values().length * 2;
+
+	private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(VARIANT_COUNT);
+
+	private static int variant(boolean useAo, BlendMode blendMode) {
+		return (blendMode.ordinal() << 1) | (useAo ? 1 : 0);
+	}
+
+	@Nullable Entry get(boolean useAo, BlendMode blendMode) {
+		return entries.get(variant(useAo, blendMode));
+	}
+
+	void put(boolean useAo, BlendMode blendMode, Entry entry) {
+		entries.set(variant(useAo, blendMode), entry);
+	}
+
+	static final class Entry {
+		/**
+		 * Encoded quads for each cull face, packed at {@link MeshEncodingHelper#stride()} intervals.
+		 */
+		final int[][] quadData;
+
+		/**
+		 * Nominal face of each quad. Not part of the encoding and can differ from light face.
+		 */
+		final int[][] nominalFaces;
+
+		Entry(int[][] quadData, int[][] nominalFaces) {
+			this.quadData = quadData;
+			this.nominalFaces = nominalFaces;
+		}
+	}
+}
@@ -25,10 +25,12 @@ import grondag.canvas.apiimpl.mesh.MeshEncodingHelper;
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
 import grondag.canvas.apiimpl.util.FaceConstants;
 import grondag.canvas.buffer.encoding.VertexEncoders;
+import grondag.canvas.mixinterface.BasicBakedModelExt;
 import grondag.frex.api.mesh.QuadEmitter;
 
 import net.minecraft.block.BlockState;
 import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.client.render.model.BasicBakedModel;
 import net.minecraft.client.render.model.BakedQuad;
 import net.minecraft.util.math.Direction;
 
@@ -63,6 +65,8 @@ public class FallbackConsumer implements Consumer<BakedModel> {
 
 	protected static final MeshMaterial[] MATERIALS;
 
+	private static final int[] EMPTY = new int[0];
+
 	static {
 		final BlendMode[] modes = BlendMode.values();
 
@@ -126,6 +130,13 @@ public class FallbackConsumer implements Consumer<BakedModel> {
 	@Override
 	public void accept(BakedModel model) {
 		final boolean useAo = context.defaultAo() && model.useAmbientOcclusion();
+
+		// basic models ignore state and random, so quads can be converted once and reused
+		if (model.getClass() == BasicBakedModel.class && !context.hasTransform()) {
+			acceptCached(((BasicBakedModelExt) model).canvas_quadCache(), model, useAo);
+			return;
+		}
+
 		final BlockState blockState = context.blockState();
 
 		acceptFaceQuads(FaceConstants.DOWN_INDEX, useAo, model.getQuads(blockState, Direction.DOWN, context.random()));
@@ -138,6 +149,104 @@ public class FallbackConsumer implements Consumer<BakedModel> {
 		acceptInsideQuads(useAo, model.getQuads(blockState, null, context.random()));
 	}
 
+	private void acceptCached(BakedQuadCache cache, BakedModel model, boolean useAo) {
+		final BlendMode blendMode = context.defaultBlendMode();
+		BakedQuadCache.Entry entry = cache.get(useAo, blendMode);
+
+		if (entry == null) {
+			entry = buildCacheEntry(model, useAo);
+			cache.put(useAo, blendMode, entry);
+		}
+
+		final int[][] quadData = entry.quadData;
+		final int[][] nominalFaces = entry.nominalFaces;
+
+		for (int faceIndex = 0; faceIndex < ModelHelper.NULL_FACE_ID; ++faceIndex) {
+			final int[] data = quadData[faceIndex];
+
+			if (data.length != 0 && context.cullTest(faceIndex)) {
+				renderCachedQuads(data, nominalFaces[faceIndex]);
+			}
+		}
+
+		final int[] insideData = quadData[ModelHelper.NULL_FACE_ID];
+
+		if (insideData.length != 0) {
+			renderCachedQuads(insideData, nominalFaces[ModelHelper.NULL_FACE_ID]);
+		}
+	}
+
+	/**
+	 * Converts all quads of the model using the editor quad and saves the encoded result.
+	 * Same conversion as {@link #renderQuad(BakedQuad, int, MeshMaterial)} up to the
+	 * point where context-dependent material mapping would happen.
+	 */
+	private BakedQuadCache.Entry buildCacheEntry(BakedModel model, boolean useAo) {
+		final MutableQuadViewImpl editorQuad = this.editorQuad;
+		final int stride = MeshEncodingHelper.stride();
+		final BlockState blockState = context.blockState();
+		final int[][] quadData = new int[BakedQuadCache.FACE_COUNT][];
+		final int[][] nominalFaces = new int[BakedQuadCache.FACE_COUNT][];
+
+		for (int faceIndex = 0; faceIndex < BakedQuadCache.FACE_COUNT; ++faceIndex) {
+			final List<BakedQuad> quads = model.getQuads(blockState, ModelHelper.faceFromIndex(faceIndex), context.random());
+			final int count = quads.size();
+
+			if (count == 0) {
+				quadData[faceIndex] = EMPTY;
+				nominalFaces[faceIndex] = EMPTY;
+				continue;
+			}
+
+			final int[] data = new int[count * stride];
+			final int[] faces = new int[count];
+
+			for (int j = 0; j < count; j++) {
+				final BakedQuad q = quads.get(j);
+				editorQuad.fromVanilla(q, q.hasShade() ? (useAo ? aoShadedMaterial() : shadedMaterial()) : (useAo ? aoFlatMaterial() : flatMaterial()), faceIndex);
+
+				// saved to header so loads don't need to recompute
+				editorQuad.geometryFlags();
+
+				final MeshMaterial mat = editorQuad.material();
+
+				if (mat.blendMode() == BlendMode.DEFAULT) {
+					editorQuad.material(context.finder.copyFrom(mat).blendMode(context.defaultBlendMode()).find());
+				}
+
+				System.arraycopy(editorBuffer, 0, data, j * stride, stride);
+				faces[j] = ModelHelper.toFaceIndex(q.getFace());
+			}
+
+			quadData[faceIndex] = data;
+			nominalFaces[faceIndex] = faces;
+		}
+
+		return new BakedQuadCache.Entry(quadData, nominalFaces);
+	}
+
+	private void renderCachedQuads(int[] data, int[] nominalFaces) {
+		final MutableQuadViewImpl editorQuad = this.editorQuad;
+		final int stride = MeshEncodingHelper.stride();
+		final int limit = data.length;
+
+		for (int index = 0, j = 0; index < limit; index += stride, ++j) {
+			editorQuad.copyAndload(data, index, stride);
+			editorQuad.nominalFace(nominalFaces[j]);
+			context.mapMaterials(editorQuad);
+
+			MeshMaterial mat = editorQuad.material();
+
+			// only possible if the material map replaced the cached material
+			if (mat.blendMode() == BlendMode.DEFAULT) {
+				mat = context.finder.copyFrom(mat).blendMode(context.defaultBlendMode()).find();
+				editorQuad.material(mat);
+			}
+
+			VertexEncoders.get(context.materialContext(), mat).encodeQuad(editorQuad, context);
+		}
+	}
+
 	private void acceptFaceQuads(int faceIndex, boolean useAo, List<BakedQuad> quads) {
 		final int count = quads.size();
 
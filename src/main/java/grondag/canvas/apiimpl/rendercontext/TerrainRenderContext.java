@@ -19,9 +19,13 @@ package grondag.canvas.apiimpl.rendercontext;
 import grondag.canvas.Configurator;
 import grondag.canvas.apiimpl.material.MeshMaterial;
 import grondag.canvas.light.AoCalculator;
+import grondag.canvas.light.AoFaceData;
 import grondag.canvas.light.LightSmoother;
+import grondag.canvas.light.LightmapHd;
+import grondag.canvas.light.LightmapHdRefs;
 import grondag.canvas.material.EncodingContext;
 import grondag.canvas.mixinterface.Matrix3fExt;
+import grondag.canvas.mixinterface.Matrix4fExt;
 import grondag.canvas.terrain.FastRenderRegion;
 import grondag.canvas.terrain.ProtoRenderRegion;
 import grondag.canvas.terrain.RenderRegionAddressHelper;
@@ -31,11 +35,12 @@ import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.render.VertexConsumer;
-import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.crash.CrashException;
 import net.minecraft.util.crash.CrashReport;
 import net.minecraft.util.crash.CrashReportSection;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Matrix3f;
+import net.minecraft.util.math.Matrix4f;
 
 import net.fabricmc.fabric.api.renderer.v1.model.FabricBakedModel;
 import net.fabricmc.fabric.api.renderer.v1.model.ModelHelper;
@@ -51,6 +56,8 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<FastRenderR
 	public final ObjectOpenHashSet<BlockEntity> nonCullBlockEntities = new ObjectOpenHashSet<>();
 	public final ObjectOpenHashSet<BlockEntity> addedBlockEntities = new ObjectOpenHashSet<>();
 	public final ObjectOpenHashSet<BlockEntity> removedBlockEntities = new ObjectOpenHashSet<>();
+	/** HD lightmaps used by the current build, taken by the region when the build completes. */
+	public final LightmapHdRefs hdLightmaps = new LightmapHdRefs();
 	private final AoCalculator aoCalc = new AoCalculator() {
 		@Override
 		protected int ao(int cacheIndex) {
@@ -66,20 +73,37 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<FastRenderR
 		protected boolean isOpaque(int cacheIndex) {
 			return region.isClosed(cacheIndex);
 		}
+
+		@Override
+		protected LightmapHd findLightmap(AoFaceData faceData) {
+			return hdLightmaps.find(faceData);
+		}
 	};
 	private int cullCompletionFlags;
 	private int cullResultFlags;
 
+	/** Model matrix for all terrain. Only the translation changes, per block. */
+	private final Matrix4f terrainMatrix = new Matrix4f();
+
 	public TerrainRenderContext() {
 		super("TerrainRenderContext");
 		region = new FastRenderRegion(this);
 		collectors.setContext(EncodingContext.TERRAIN);
+
+		terrainMatrix.loadIdentity();
+		matrix = terrainMatrix;
+		final Matrix3f identityNormal = new Matrix3f();
+		identityNormal.loadIdentity();
+		normalMatrix = (Matrix3fExt) (Object) identityNormal;
+		isTranslation = true;
 	}
 
 	public TerrainRenderContext prepareRegion(ProtoRenderRegion protoRegion) {
 		nonCullBlockEntities.clear();
 		addedBlockEntities.clear();
 		removedBlockEntities.clear();
+		// anything left is from a build that was abandoned
+		hdLightmaps.releaseAll();
 		region.prepare(protoRegion);
 
 		if (Configurator.lightSmoothing) {
@@ -90,23 +114,37 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<FastRenderR
 		return this;
 	}
 
-	public void tesselateFluid(BlockState blockState, BlockPos blockPos, boolean defaultAo, final FabricBakedModel model, MatrixStack matrixStack) {
-		isFluidModel = true;
-		tesselateInner(blockState, blockPos, defaultAo, model, matrixStack);
+	/**
+	 * Prepares this context to tessellate part of the region prepared by another context.
+	 */
+	public TerrainRenderContext prepareRegion(TerrainRenderContext source) {
+		hdLightmaps.releaseAll();
+		region.copyFrom(source.region);
+		return this;
 	}
 
-	public void tesselateBlock(BlockState blockState, BlockPos blockPos, boolean defaultAo, final FabricBakedModel model, MatrixStack matrixStack) {
-		isFluidModel = false;
-		tesselateInner(blockState, blockPos, defaultAo, model, matrixStack);
+	/**
+	 * Sets model-space position of the next block. Terrain model transforms are
+	 * always a translation, so no matrix stack is needed.
+	 */
+	public void setBlockOffset(float x, float y, float z) {
+		final Matrix4fExt m = (Matrix4fExt) (Object) terrainMatrix;
+		m.a03(x);
+		m.a13(y);
+		m.a23(z);
 	}
 
-	// PERF: don't pass in matrixStack each time, just change model matrix directly
-	private void tesselateInner(BlockState blockState, BlockPos blockPos, boolean defaultAo, final FabricBakedModel model, MatrixStack matrixStack) {
-		matrix = matrixStack.peek().getModel();
+	public void tesselateFluid(BlockState blockState, BlockPos blockPos, boolean defaultAo, final FabricBakedModel model) {
+		isFluidModel = true;
+		tesselateInner(blockState, blockPos, defaultAo, model);
+	}
 
-		// PERF: can probably grab this at prepare
-		normalMatrix = (Matrix3fExt) (Object) matrixStack.peek().getNormal();
+	public void tesselateBlock(BlockState blockState, BlockPos blockPos, boolean defaultAo, final FabricBakedModel model) {
+		isFluidModel = false;
+		tesselateInner(blockState, blockPos, defaultAo, model);
+	}
 
+	private void tesselateInner(BlockState blockState, BlockPos blockPos, boolean defaultAo, final FabricBakedModel model) {
 		try {
 			aoCalc.prepare(RenderRegionAddressHelper.interiorIndex(blockPos));
 			prepareForBlock(blockState, blockPos, defaultAo, -1);
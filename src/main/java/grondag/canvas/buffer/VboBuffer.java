@@ -22,7 +22,6 @@ import grondag.canvas.CanvasMod;
 import grondag.canvas.Configurator;
 import grondag.canvas.material.MaterialVertexFormat;
 import grondag.canvas.varia.CanvasGlHelper;
-import net.minecraft.client.render.VertexFormatElement;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL21;
 
@@ -107,10 +106,10 @@ public class VboBuffer {
 			GlStateManager.enableClientState(GL11.GL_VERTEX_ARRAY);
 
 			if (Configurator.logGlStateChanges) {
-				CanvasMod.LOG.info(String.format("GlState: GlStateManager.vertexPointer(%d, %d, %d, %d)", 3, VertexFormatElement.Format.FLOAT.getGlId(), format.vertexStrideBytes, 0));
+				CanvasMod.LOG.info(String.format("GlState: GlStateManager.vertexPointer(%d, %d, %d, %d)", 3, format.positionGlConstant, format.vertexStrideBytes, 0));
 			}
 
-			GlStateManager.vertexPointer(3, VertexFormatElement.Format.FLOAT.getGlId(), format.vertexStrideBytes, 0);
+			GlStateManager.vertexPointer(3, format.positionGlConstant, format.vertexStrideBytes, 0);
 
 			CanvasGlHelper.enableAttributesVao(format.attributeCount);
 			format.bindAttributeLocations(0);
@@ -124,11 +123,11 @@ public class VboBuffer {
 		BindStateManager.bind(glBufferId());
 
 		if (Configurator.logGlStateChanges) {
-			CanvasMod.LOG.info(String.format("GlState: GlStateManager.vertexPointer(%d, %d, %d, %d)", 3, VertexFormatElement.Format.FLOAT.getGlId(), format.vertexStrideBytes, 0));
+			CanvasMod.LOG.info(String.format("GlState: GlStateManager.vertexPointer(%d, %d, %d, %d)", 3, format.positionGlConstant, format.vertexStrideBytes, 0));
 		}
 
 		GlStateManager.enableClientState(GL11.GL_VERTEX_ARRAY);
-		GlStateManager.vertexPointer(3, VertexFormatElement.Format.FLOAT.getGlId(), format.vertexStrideBytes, 0);
+		GlStateManager.vertexPointer(3, format.positionGlConstant, format.vertexStrideBytes, 0);
 		format.enableAndBindAttributes(0);
 	}
 
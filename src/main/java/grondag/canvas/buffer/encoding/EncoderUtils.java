@@ -22,6 +22,7 @@ import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
 import grondag.canvas.apiimpl.rendercontext.AbstractRenderContext;
 import grondag.canvas.apiimpl.util.ColorHelper;
 import grondag.canvas.apiimpl.util.NormalHelper;
+import grondag.canvas.material.MaterialVertexFormats;
 import grondag.canvas.mixinterface.Matrix3fExt;
 import grondag.canvas.mixinterface.Matrix4fExt;
 import grondag.canvas.texture.SpriteInfoTexture;
@@ -107,6 +108,7 @@ abstract class EncoderUtils {
 
 	static void bufferQuadDirect1(MutableQuadViewImpl quad, AbstractRenderContext context) {
 		final Matrix4fExt matrix = (Matrix4fExt) (Object) context.matrix();
+		final boolean isTranslation = context.isTranslation();
 		final Matrix3fExt normalMatrix = context.normalMatrix();
 		final float[] aoData = quad.ao;
 		final MeshMaterial mat = quad.material();
@@ -135,7 +137,7 @@ abstract class EncoderUtils {
 		int k = 0;
 
 		for (int i = 0; i < 4; i++) {
-			quad.transformAndAppend(i, matrix, appendData, k);
+			quad.transformAndAppend(i, matrix, isTranslation, appendData, k);
 			k += 3;
 
 			appendData[k++] = quad.vertexColor(i);
@@ -164,6 +166,80 @@ abstract class EncoderUtils {
 		buff0.add(appendData, k);
 	}
 
+	/**
+	 * Like {@link #bufferQuadDirect1(MutableQuadViewImpl, AbstractRenderContext)} but
+	 * for {@link MaterialVertexFormats#COMPACT_TERRAIN}. Position is quantized to
+	 * 16-bit fixed point and sprite id fills the remaining two bytes.
+	 */
+	static void bufferQuadCompact1(MutableQuadViewImpl quad, AbstractRenderContext context) {
+		final Matrix4fExt matrix = (Matrix4fExt) (Object) context.matrix();
+		final boolean isTranslation = context.isTranslation();
+		final Matrix3fExt normalMatrix = context.normalMatrix();
+		final float[] aoData = quad.ao;
+		final MeshMaterial mat = quad.material();
+		final VertexCollectorImpl buff0 = context.collectors.get(mat);
+		final int[] appendData = context.appendData;
+
+		assert mat.blendMode() != BlendMode.DEFAULT;
+
+		final int shaderFlags = mat.shaderFlags << 16;
+
+		int packedNormal = 0;
+		int transformedNormal = 0;
+		final boolean useNormals = quad.hasVertexNormals();
+
+		if (useNormals) {
+			quad.populateMissingNormals();
+		} else {
+			packedNormal = quad.packedFaceNormal();
+			transformedNormal = normalMatrix.canvas_transform(packedNormal);
+		}
+
+		final int spriteIdCoord = SpriteInfoTexture.BLOCKS.coordinate(quad.spriteId());
+
+		assert spriteIdCoord <= 0xFFFF;
+
+		int k = 0;
+
+		for (int i = 0; i < 4; i++) {
+			// transform writes three floats - repacked into two ints below
+			quad.transformAndAppend(i, matrix, isTranslation, appendData, k);
+			final int x = quantizePosition(appendData[k]);
+			final int y = quantizePosition(appendData[k + 1]);
+			final int z = quantizePosition(appendData[k + 2]);
+			appendData[k++] = (x & 0xFFFF) | (y << 16);
+			appendData[k++] = (z & 0xFFFF) | (spriteIdCoord << 16);
+
+			appendData[k++] = quad.vertexColor(i);
+			appendData[k++] = quad.spriteBufferU(i) | (quad.spriteBufferV(i) << 16);
+
+			final int packedLight = quad.lightmap(i);
+			final int blockLight = (packedLight & 0xFF);
+			final int skyLight = ((packedLight >> 16) & 0xFF);
+			appendData[k++] = blockLight | (skyLight << 8) | shaderFlags;
+
+			if (useNormals) {
+				final int p = quad.packedNormal(i);
+
+				if (p != packedNormal) {
+					packedNormal = p;
+					transformedNormal = normalMatrix.canvas_transform(packedNormal);
+				}
+			}
+
+			final int ao = aoData == null ? NO_AO_SHADE : ((Math.round(aoData[i] * 254) - 127) << 24);
+			appendData[k++] = transformedNormal | ao;
+		}
+
+		buff0.add(appendData, k);
+	}
+
+	private static int quantizePosition(int floatBits) {
+		final int result = Math.round(Float.intBitsToFloat(floatBits) * MaterialVertexFormats.COMPACT_POSITION_SCALE);
+		assert result >= Short.MIN_VALUE && result <= Short.MAX_VALUE;
+		return result;
+	}
+
 	static void applyBlockLighting(MutableQuadViewImpl quad, AbstractRenderContext context) {
 		// FIX: per-vertex light maps will be ignored unless we bake a custom HD map
 		// or retain vertex light maps in buffer format and logic in shader to take max
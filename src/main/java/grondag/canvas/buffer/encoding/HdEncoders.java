@@ -44,6 +44,7 @@ public abstract class HdEncoders {
 
 	static void bufferQuadHd1(MutableQuadViewImpl quad, AbstractRenderContext context) {
 		final Matrix4fExt matrix = (Matrix4fExt) (Object) context.matrix();
+		final boolean isTranslation = context.isTranslation();
 		final Matrix3fExt normalMatrix = context.normalMatrix();
 		final float[] aoData = quad.ao;
 		final MeshMaterial mat = quad.material();
@@ -70,7 +71,7 @@ public abstract class HdEncoders {
 		int k = 0;
 
 		for (int i = 0; i < 4; i++) {
-			quad.transformAndAppend(i, matrix, appendData, k);
+			quad.transformAndAppend(i, matrix, isTranslation, appendData, k);
 			k += 3;
 
 			appendData[k++] = quad.spriteColor(i, 0);
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.buffer.encoding;
+
+import java.util.Arrays;
+
+import grondag.fermion.intstream.IntStreamProvider.IntStreamImpl;
+
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * Sorts quads farthest-first for translucency.  Distances become integer keys that
+ * are radix sorted as an index permutation, then quads are moved in a single gather
+ * pass. Avoids moving quad data on every comparison swap.
+ *
+ * <p>Not thread-safe - use {@link #get()} for a thread-local instance.
+ */
+public class QuadSorter {
+	private static final ThreadLocal<QuadSorter> INSTANCE = ThreadLocal.withInitial(QuadSorter::new);
+
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX_SIZE = 1 << RADIX_BITS;
+	private static final int RADIX_MASK = RADIX_SIZE - 1;
+
+	private final int[] histogram = new int[RADIX_SIZE];
+	private float[] distance = new float[512];
+	private int[] keys = new int[512];
+	private int[] keysSwap = new int[512];
+	private int[] order = new int[512];
+	private int[] orderSwap = new int[512];
+	private int[] quadData = new int[0x10000];
+
+	public static QuadSorter get() {
+		return INSTANCE.get();
+	}
+
+	/**
+	 * Sorts quads in place, farthest first.
+	 *
+	 * @param data quad vertex data with position as three floats at start of each vertex
+	 * @param quadCount number of quads in data
+	 * @param vertexIntStride ints per vertex
+	 * @param distanceOut receives squared distance of each quad in sorted order. Reallocated if too small.
+	 * @return distanceOut or its replacement
+	 */
+	public double[] sort(IntStreamImpl data, int quadCount, int vertexIntStride, double x, double y, double z, double[] distanceOut) {
+		if (distanceOut == null || distanceOut.length < quadCount) {
+			distanceOut = new double[MathHelper.smallestEncompassingPowerOfTwo(Math.max(quadCount, 1))];
+		}
+
+		if (quadCount == 0) {
+			return distanceOut;
+		}
+
+		ensureCapacity(quadCount);
+
+		final float[] distance = this.distance;
+		final int[] keys = this.keys;
+		final int[] order = this.order;
+		final float fx = (float) x;
+		final float fy = (float) y;
+		final float fz = (float) z;
+
+		for (int q = 0; q < quadCount; ++q) {
+			final float d = distanceSq(data, vertexIntStride, q, fx, fy, fz);
+			distance[q] = d;
+			// Bits of non-negative floats sort the same as the float values.
+			// Complement so that ascending key order is farthest first.
+			keys[q] = ~Float.floatToRawIntBits(d);
+			order[q] = q;
+		}
+
+		radixSort(quadCount);
+		gather(data, quadCount, vertexIntStride * 4);
+
+		final int[] sorted = this.order;
+
+		for (int q = 0; q < quadCount; ++q) {
+			distanceOut[q] = distance[sorted[q]];
+		}
+
+		return distanceOut;
+	}
+
+	private static float distanceSq(IntStreamImpl data, int vertexIntStride, int quadIndex, float x, float y, float z) {
+		int i = quadIndex * vertexIntStride * 4;
+		float sx = Float.intBitsToFloat(data.get(i));
+		float sy = Float.intBitsToFloat(data.get(i + 1));
+		float sz = Float.intBitsToFloat(data.get(i + 2));
+
+		i += vertexIntStride;
+		sx += Float.intBitsToFloat(data.get(i));
+		sy += Float.intBitsToFloat(data.get(i + 1));
+		sz += Float.intBitsToFloat(data.get(i + 2));
+
+		i += vertexIntStride;
+		sx += Float.intBitsToFloat(data.get(i));
+		sy += Float.intBitsToFloat(data.get(i + 1));
+		sz += Float.intBitsToFloat(data.get(i + 2));
+
+		i += vertexIntStride;
+		sx += Float.intBitsToFloat(data.get(i));
+		sy += Float.intBitsToFloat(data.get(i + 1));
+		sz += Float.intBitsToFloat(data.get(i + 2));
+
+		// distance from average of vertices
+		final float dx = sx * 0.25f - x;
+		final float dy = sy * 0.25f - y;
+		final float dz = sz * 0.25f - z;
+
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * LSD radix sort of {@link #order} by unsigned {@link #keys}.  Stable, so quads
+	 * at equal distance keep buffer order.  Skips passes where every key has the same digit.
+	 */
+	private void radixSort(int count) {
+		final int[] histogram = this.histogram;
+
+		for (int shift = 0; shift < 32; shift += RADIX_BITS) {
+			final int[] keys = this.keys;
+			final int[] order = this.order;
+
+			Arrays.fill(histogram, 0);
+
+			for (int i = 0; i < count; ++i) {
+				++histogram[(keys[i] >>> shift) & RADIX_MASK];
+			}
+
+			if (histogram[(keys[0] >>> shift) & RADIX_MASK] == count) {
+				continue;
+			}
+
+			int sum = 0;
+
+			for (int i = 0; i < RADIX_SIZE; ++i) {
+				final int n = histogram[i];
+				histogram[i] = sum;
+				sum += n;
+			}
+
+			final int[] keysOut = keysSwap;
+			final int[] orderOut = orderSwap;
+
+			for (int i = 0; i < count; ++i) {
+				final int key = keys[i];
+				final int target = histogram[(key >>> shift) & RADIX_MASK]++;
+				keysOut[target] = key;
+				orderOut[target] = order[i];
+			}
+
+			keysSwap = keys;
+			orderSwap = order;
+			this.keys = keysOut;
+			this.order = orderOut;
+		}
+	}
+
+	/**
+	 * Rewrites quad data in sorted order from a single copy of the unsorted data.
+	 */
+	private void gather(IntStreamImpl data, int quadCount, int quadIntStride) {
+		final int intCount = quadCount * quadIntStride;
+
+		if (quadData.length < intCount) {
+			quadData = new int[MathHelper.smallestEncompassingPowerOfTwo(intCount)];
+		}
+
+		final int[] quadData = this.quadData;
+		final int[] order = this.order;
+		data.copyTo(0, quadData, 0, intCount);
+
+		for (int q = 0; q < quadCount; ++q) {
+			data.copyFrom(q * quadIntStride, quadData, order[q] * quadIntStride, quadIntStride);
+		}
+	}
+
+	private void ensureCapacity(int quadCount) {
+		if (keys.length < quadCount) {
+			final int size = MathHelper.smallestEncompassingPowerOfTwo(quadCount);
+			distance = new float[size];
+			keys = new int[size];
+			keysSwap = new int[size];
+			order = new int[size];
+			orderSwap = new int[size];
+		}
+	}
+}
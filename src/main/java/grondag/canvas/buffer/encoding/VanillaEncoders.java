@@ -18,11 +18,13 @@ package grondag.canvas.buffer.encoding;
 
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
 import grondag.canvas.apiimpl.rendercontext.AbstractRenderContext;
+import grondag.canvas.material.MaterialVertexFormat;
 import grondag.canvas.material.MaterialVertexFormats;
 
 import static grondag.canvas.buffer.encoding.EncoderUtils.applyBlockLighting;
 import static grondag.canvas.buffer.encoding.EncoderUtils.applyItemLighting;
 import static grondag.canvas.buffer.encoding.EncoderUtils.bufferQuad1;
+import static grondag.canvas.buffer.encoding.EncoderUtils.bufferQuadCompact1;
 import static grondag.canvas.buffer.encoding.EncoderUtils.bufferQuadDirect1;
 import static grondag.canvas.buffer.encoding.EncoderUtils.colorizeQuad;
 
@@ -47,6 +49,16 @@ public class VanillaEncoders {
 		}
 	};
 
+	public static final VertexEncoder COMPACT_TERRAIN_1 = new VanillaTerrainEncoder(MaterialVertexFormats.COMPACT_TERRAIN) {
+		@Override
+		public void encodeQuad(MutableQuadViewImpl quad, AbstractRenderContext context) {
+			// needs to happen before offsets are applied
+			applyBlockLighting(quad, context);
+			colorizeQuad(quad, context);
+			bufferQuadCompact1(quad, context);
+		}
+	};
+
 	public static final VertexEncoder VANILLA_ITEM_1 = new VertexEncoder(MaterialVertexFormats.VANILLA_BLOCKS_AND_ITEMS) {
 		@Override
 		public void encodeQuad(MutableQuadViewImpl quad, AbstractRenderContext context) {
@@ -59,7 +71,11 @@ public class VanillaEncoders {
 	abstract static class VanillaTerrainEncoder extends VertexEncoder {
 
 		VanillaTerrainEncoder() {
-			super(MaterialVertexFormats.VANILLA_BLOCKS_AND_ITEMS);
+			this(MaterialVertexFormats.VANILLA_BLOCKS_AND_ITEMS);
+		}
+
+		VanillaTerrainEncoder(MaterialVertexFormat format) {
+			super(format);
 		}
 
 		@Override
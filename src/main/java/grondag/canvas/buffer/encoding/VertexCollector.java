@@ -30,4 +30,6 @@ public interface VertexCollector extends VertexConsumer {
 	void addf(float... f);
 
 	void add(int[] appendData, int length);
+
+	void add(int[] appendData, int offset, int length);
 }
@@ -16,27 +16,17 @@
 
 package grondag.canvas.buffer.encoding;
 
-import com.google.common.primitives.Doubles;
 import grondag.canvas.material.EncodingContext;
 import grondag.canvas.material.MaterialState;
 import grondag.canvas.material.MaterialVertexFormat;
 import grondag.canvas.material.MaterialVertexFormats;
 import grondag.fermion.intstream.IntStreamProvider;
 import grondag.fermion.intstream.IntStreamProvider.IntStreamImpl;
-import it.unimi.dsi.fastutil.Swapper;
-import it.unimi.dsi.fastutil.ints.IntComparator;
 import net.minecraft.client.render.VertexConsumer;
-import net.minecraft.util.math.MathHelper;
 
 import java.nio.IntBuffer;
 
 public class VertexCollectorImpl implements VertexCollector {
-	private static final ThreadLocal<QuadSorter> quadSorter = new ThreadLocal<QuadSorter>() {
-		@Override
-		protected QuadSorter initialValue() {
-			return new QuadSorter();
-		}
-	};
 	// TODO: make parameters dynamic based on system specs / config
 	private static final IntStreamProvider INT_STREAM_PROVIDER = new IntStreamProvider(0x10000, 16, 4096);
 	private final IntStreamImpl data = INT_STREAM_PROVIDER.claim();
@@ -93,6 +83,10 @@ public class VertexCollectorImpl implements VertexCollector {
 		return materialState;
 	}
 
+	public MaterialVertexFormat format() {
+		return format;
+	}
+
 	public int vertexCount() {
 		return integerSize / format.vertexStrideInts;
 	}
@@ -107,41 +101,11 @@ public class VertexCollectorImpl implements VertexCollector {
 	}
 
 	public void sortQuads(double x, double y, double z) {
-		quadSorter.get().doSort(this, x, y, z);
+		perQuadDistance = QuadSorter.get().sort(data, quadCount(), format.vertexStrideInts, x, y, z, perQuadDistance);
 		sortReadIndex = 0;
 		sortMaxIndex = quadCount();
 	}
 
-	private double getDistanceSq(double x, double y, double z, int integerStride, int vertexIndex) {
-		// unpack vertex coordinates
-		int i = vertexIndex * integerStride * 4;
-		final double x0 = Float.intBitsToFloat(data.get(i));
-		final double y0 = Float.intBitsToFloat(data.get(i + 1));
-		final double z0 = Float.intBitsToFloat(data.get(i + 2));
-
-		i += integerStride;
-		final double x1 = Float.intBitsToFloat(data.get(i));
-		final double y1 = Float.intBitsToFloat(data.get(i + 1));
-		final double z1 = Float.intBitsToFloat(data.get(i + 2));
-
-		i += integerStride;
-		final double x2 = Float.intBitsToFloat(data.get(i));
-		final double y2 = Float.intBitsToFloat(data.get(i + 1));
-		final double z2 = Float.intBitsToFloat(data.get(i + 2));
-
-		i += integerStride;
-		final double x3 = Float.intBitsToFloat(data.get(i));
-		final double y3 = Float.intBitsToFloat(data.get(i + 1));
-		final double z3 = Float.intBitsToFloat(data.get(i + 2));
-
-		// compute average distance by component
-		final double dx = (x0 + x1 + x2 + x3) * 0.25 - x;
-		final double dy = (y0 + y1 + y2 + y3) * 0.25 - y;
-		final double dz = (z0 + z1 + z2 + z3) * 0.25 - z;
-
-		return dx * dx + dy * dy + dz * dz;
-	}
-
 	/**
 	 * Index of first quad that will be referenced by {@link #unpackUntilDistance(double)}
 	 */
@@ -259,6 +223,12 @@ public class VertexCollectorImpl implements VertexCollector {
 		integerSize += length;
 	}
 
+	@Override
+	public final void add(int[] appendData, int offset, int length) {
+		data.copyFrom(integerSize, appendData, offset, length);
+		integerSize += length;
+	}
+
 	@Override
 	public VertexConsumer vertex(double x, double y, double z) {
 		assert defaultEncoder != null;
@@ -306,59 +276,4 @@ public class VertexCollectorImpl implements VertexCollector {
 	public void next() {
 		// NOOP
 	}
-
-	private static class QuadSorter {
-		double[] perQuadDistance = new double[512];
-		private final IntComparator comparator = new IntComparator() {
-			@Override
-			public int compare(int a, int b) {
-				return Doubles.compare(perQuadDistance[b], perQuadDistance[a]);
-			}
-		};
-		int[] quadSwap = new int[128];
-		IntStreamImpl data;
-		int quadIntStride;
-		private final Swapper swapper = new Swapper() {
-			@Override
-			public void swap(int a, int b) {
-				final double distSwap = perQuadDistance[a];
-				perQuadDistance[a] = perQuadDistance[b];
-				perQuadDistance[b] = distSwap;
-
-				data.copyTo(a * quadIntStride, quadSwap, 0, quadIntStride);
-				data.copyFromDirect(a * quadIntStride, data, b * quadIntStride, quadIntStride);
-				data.copyFrom(b * quadIntStride, quadSwap, 0, quadIntStride);
-			}
-		};
-
-		private void doSort(VertexCollectorImpl caller, double x, double y, double z) {
-			data = caller.data;
-
-			// works because 4 bytes per int
-			quadIntStride = caller.format.vertexStrideBytes;
-			final int vertexIntStride = quadIntStride / 4;
-			final int quadCount = caller.vertexCount() / 4;
-
-			if (perQuadDistance.length < quadCount) {
-				perQuadDistance = new double[MathHelper.smallestEncompassingPowerOfTwo(quadCount)];
-			}
-
-			if (quadSwap.length < quadIntStride) {
-				quadSwap = new int[MathHelper.smallestEncompassingPowerOfTwo(quadIntStride)];
-			}
-
-			for (int j = 0; j < quadCount; ++j) {
-				perQuadDistance[j] = caller.getDistanceSq(x, y, z, vertexIntStride, j);
-			}
-
-			// sort the indexes by distance - farthest first
-			it.unimi.dsi.fastutil.Arrays.quickSort(0, quadCount, comparator, swapper);
-
-			if (caller.perQuadDistance == null || caller.perQuadDistance.length < quadCount) {
-				caller.perQuadDistance = new double[perQuadDistance.length];
-			}
-
-			System.arraycopy(perQuadDistance, 0, caller.perQuadDistance, 0, quadCount);
-		}
-	}
 }
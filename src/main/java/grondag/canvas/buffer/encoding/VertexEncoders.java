@@ -20,9 +20,11 @@ import grondag.canvas.Configurator;
 import grondag.canvas.apiimpl.material.MeshMaterial;
 import grondag.canvas.material.EncodingContext;
 import grondag.canvas.material.MaterialState;
+import grondag.canvas.material.MaterialVertexFormats;
 import grondag.canvas.shader.ShaderPass;
 
 import static grondag.canvas.buffer.encoding.HdEncoders.HD_TERRAIN_1;
+import static grondag.canvas.buffer.encoding.VanillaEncoders.COMPACT_TERRAIN_1;
 import static grondag.canvas.buffer.encoding.VanillaEncoders.VANILLA_BLOCK_1;
 import static grondag.canvas.buffer.encoding.VanillaEncoders.VANILLA_ITEM_1;
 import static grondag.canvas.buffer.encoding.VanillaEncoders.VANILLA_TERRAIN_1;
@@ -69,7 +71,7 @@ public class VertexEncoders {
 		ENCODERS[lookupIndex(BLOCK, false)] = VANILLA_BLOCK_1;
 		ENCODERS[lookupIndex(BLOCK, true)] = VANILLA_BLOCK_1;
 
-		ENCODERS[lookupIndex(TERRAIN, false)] = Configurator.hdLightmaps() ? HD_TERRAIN_1 : VANILLA_TERRAIN_1;
+		ENCODERS[lookupIndex(TERRAIN, false)] = Configurator.hdLightmaps() ? HD_TERRAIN_1 : MaterialVertexFormats.useCompactTerrain() ? COMPACT_TERRAIN_1 : VANILLA_TERRAIN_1;
 		ENCODERS[lookupIndex(TERRAIN, true)] = Configurator.hdLightmaps() ? HD_TERRAIN_1 : VANILLA_TERRAIN_1;
 
 		ENCODERS[lookupIndex(ITEM, false)] = VANILLA_ITEM_1;
@@ -77,6 +77,10 @@ public abstract class AoCalculator {
 	 * current block
 	 */
 	private int completionFlags = 0;
+	// scratch for HD lightmap canonicalization
+	private final int[] hdGrid = new int[18];
+	private final int[] hdCanonicalGrid = new int[18];
+	private final AoFaceData hdCanonicalData = new AoFaceData();
 
 	public AoCalculator() {
 		for (int i = 0; i < 12; i++) {
@@ -100,6 +104,32 @@ public abstract class AoCalculator {
 
 	protected abstract boolean isOpaque(int cacheIndex);
 
+	/**
+	 * Looks up the lightmap for the canonical orientation of the face data
+	 * and records the transform needed to sample it.
+	 */
+	private void setHdLight(MutableQuadViewImpl quad, AoFaceData faceData) {
+		final int[] grid = hdGrid;
+		faceData.toGrid(grid);
+		final int transform = LightmapHdTransform.canonicalize(grid, hdCanonicalGrid);
+		quad.hdLightTransform = transform;
+
+		if (transform == LightmapHdTransform.IDENTITY) {
+			quad.hdLight = findLightmap(faceData);
+		} else {
+			final AoFaceData canonical = hdCanonicalData;
+			canonical.fromGrid(hdCanonicalGrid);
+			quad.hdLight = findLightmap(canonical);
+		}
+	}
+
+	/**
+	 * Override to track lightmaps that must stay allocated while quads using them are drawn.
+	 */
+	protected LightmapHd findLightmap(AoFaceData faceData) {
+		return LightmapHd.find(faceData);
+	}
+
 	private boolean checkBlendDirty(int blendIndex) {
 		if ((blendIndex & 63) == 0) {
 			final long mask = 1L << blendIndex;
@@ -248,7 +278,7 @@ public abstract class AoCalculator {
 			quad.v[i] = vFunc.apply(quad, i);
 		}
 
-		quad.hdLight = LightmapHd.find(faceData);
+		setHdLight(quad, faceData);
 	}
 
 	private void flatFaceSmoothHd(MutableQuadViewImpl quad, int flatBrightness) {
@@ -264,7 +294,7 @@ public abstract class AoCalculator {
 			quad.v[i] = vFunc.apply(quad, i);
 		}
 
-		quad.hdLight = LightmapHd.find(faceData);
+		setHdLight(quad, faceData);
 	}
 
 	/**
@@ -339,7 +369,7 @@ public abstract class AoCalculator {
 			quad.v[i] = vFunc.apply(quad, i);
 		}
 
-		quad.hdLight = LightmapHd.find(faceData);
+		setHdLight(quad, faceData);
 	}
 
 	private void irregularFace(MutableQuadViewImpl quad) {
@@ -16,6 +16,8 @@
 
 package grondag.canvas.light;
 
+import it.unimi.dsi.fastutil.HashCommon;
+
 /**
  * Holds per-corner results for a single block face. Handles caching and
  * provides various utility methods to simplify code elsewhere.
@@ -44,6 +46,11 @@ public class AoFaceData {
 	public int aoTopLeft;
 	public int aoTopRight;
 	public int aoCenter;
+	// all values packed by updateHash, used as lightmap key
+	long key0;
+	long key1;
+	long key2;
+	long key3;
 	private int hashCode;
 
 	public static void blendTo(AoFaceData in0, float w0, AoFaceData in1, float w1, AoFaceData out) {
@@ -128,6 +135,59 @@ public class AoFaceData {
 		updateHash();
 	}
 
+	/**
+	 * Copies values in 3x3 grid order, left to right and top to bottom:
+	 * nine light values followed by nine AO values.
+	 */
+	public void toGrid(int[] grid) {
+		grid[0] = topLeft;
+		grid[1] = top;
+		grid[2] = topRight;
+		grid[3] = left;
+		grid[4] = center;
+		grid[5] = right;
+		grid[6] = bottomLeft;
+		grid[7] = bottom;
+		grid[8] = bottomRight;
+
+		grid[9] = aoTopLeft;
+		grid[10] = aoTop;
+		grid[11] = aoTopRight;
+		grid[12] = aoLeft;
+		grid[13] = aoCenter;
+		grid[14] = aoRight;
+		grid[15] = aoBottomLeft;
+		grid[16] = aoBottom;
+		grid[17] = aoBottomRight;
+	}
+
+	/**
+	 * Inverse of {@link #toGrid(int[])}. Updates hash.
+	 */
+	public void fromGrid(int[] grid) {
+		topLeft = grid[0];
+		top = grid[1];
+		topRight = grid[2];
+		left = grid[3];
+		center = grid[4];
+		right = grid[5];
+		bottomLeft = grid[6];
+		bottom = grid[7];
+		bottomRight = grid[8];
+
+		aoTopLeft = grid[9];
+		aoTop = grid[10];
+		aoTopRight = grid[11];
+		aoLeft = grid[12];
+		aoCenter = grid[13];
+		aoRight = grid[14];
+		aoBottomLeft = grid[15];
+		aoBottom = grid[16];
+		aoBottomRight = grid[17];
+
+		updateHash();
+	}
+
 	@Override
 	public int hashCode() {
 		return hashCode;
@@ -140,26 +200,7 @@ public class AoFaceData {
 		}
 
 		final AoFaceData o = (AoFaceData) other;
-
-		return o.bottom == bottom &&
-				o.top == top &&
-				o.left == left &&
-				o.right == right &&
-				o.bottomLeft == bottomLeft &&
-				o.bottomRight == bottomRight &&
-				o.topLeft == topLeft &&
-				o.topRight == topRight &&
-				o.center == center &&
-
-				o.aoBottomLeft == aoBottomLeft &&
-				o.aoBottomRight == aoBottomRight &&
-				o.aoTopLeft == aoTopLeft &&
-				o.aoTopRight == aoTopRight &&
-				o.aoLeft == aoLeft &&
-				o.aoBottom == aoBottom &&
-				o.aoTop == aoTop &&
-				o.aoRight == aoRight &&
-				o.aoCenter == aoCenter;
+		return o.key0 == key0 && o.key1 == key1 && o.key2 == key2 && o.key3 == key3;
 	}
 
 	@Override
@@ -186,30 +227,52 @@ public class AoFaceData {
 		result.aoTop = aoTop;
 		result.aoCenter = aoCenter;
 
+		result.key0 = key0;
+		result.key1 = key1;
+		result.key2 = key2;
+		result.key3 = key3;
 		result.hashCode = hashCode;
 
 		return result;
 	}
 
+	/**
+	 * Packs values into {@link #key0} - {@link #key3} and updates hash.
+	 * Call after changing any value.
+	 */
 	public void updateHash() {
-		int h = bottom;
-		h = 31 * h + top;
-		h = 31 * h + left;
-		h = 31 * h + right;
-		h = 31 * h + bottomLeft;
-		h = 31 * h + bottomRight;
-		h = 31 * h + topLeft;
-		h = 31 * h + topRight;
-		h = 31 * h + center;
-		h = 31 * h + aoBottomLeft;
-		h = 31 * h + aoBottomRight;
-		h = 31 * h + aoTopLeft;
-		h = 31 * h + aoTopRight;
-		h = 31 * h + aoBottom;
-		h = 31 * h + aoRight;
-		h = 31 * h + aoLeft;
-		h = 31 * h + aoTop;
-		h = 31 * h + aoCenter;
-		hashCode = h;
+		key0 = packLight(topLeft) | (packLight(top) << 16) | (packLight(topRight) << 32) | (packLight(left) << 48);
+		key1 = packLight(center) | (packLight(right) << 16) | (packLight(bottomLeft) << 32) | (packLight(bottom) << 48);
+
+		final long opaqueFlags = opaqueFlag(topLeft, 0) | opaqueFlag(top, 1) | opaqueFlag(topRight, 2)
+				| opaqueFlag(left, 3) | opaqueFlag(center, 4) | opaqueFlag(right, 5)
+				| opaqueFlag(bottomLeft, 6) | opaqueFlag(bottom, 7) | opaqueFlag(bottomRight, 8);
+
+		key2 = packLight(bottomRight) | (opaqueFlags << 16) | ((aoTopLeft & 0xFFL) << 25)
+				| ((aoTop & 0xFFL) << 33) | ((aoTopRight & 0xFFL) << 41) | ((aoLeft & 0xFFL) << 49);
+
+		key3 = (aoCenter & 0xFFL) | ((aoRight & 0xFFL) << 8) | ((aoBottomLeft & 0xFFL) << 16)
+				| ((aoBottom & 0xFFL) << 24) | ((aoBottomRight & 0xFFL) << 32);
+
+		hashCode = hash(key0, key1, key2, key3);
+	}
+
+	static int hash(long key0, long key1, long key2, long key3) {
+		long h = HashCommon.mix(key0);
+		h = HashCommon.mix(h ^ key1);
+		h = HashCommon.mix(h ^ key2);
+		h = HashCommon.mix(h ^ key3);
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Block and sky channels in 16 bits. Opaque is tracked separately.
+	 */
+	private static long packLight(int light) {
+		return light == OPAQUE ? 0 : (light & 0xFF) | ((light >> 8) & 0xFF00);
+	}
+
+	private static long opaqueFlag(int light, int bit) {
+		return light == OPAQUE ? 1L << bit : 0;
 	}
 }
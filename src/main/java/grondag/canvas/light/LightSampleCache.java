@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.light;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Unsmoothed light samples for recently smoothed regions, so a neighbor's margin can be
+ * copied instead of queried again from the world. Direct-mapped, shared by all build threads.
+ *
+ * <p>Each slot has a version that is incremented when any region mapped to it is invalidated.
+ * Samples are published with the version read before sampling began and are only returned
+ * while that version is current, so samples captured concurrently with a change are never used.
+ */
+final class LightSampleCache {
+	private static final int SLOT_BITS = 8;
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	private static final AtomicReferenceArray<Entry> ENTRIES = new AtomicReferenceArray<>(1 << SLOT_BITS);
+	private static final AtomicIntegerArray VERSIONS = new AtomicIntegerArray(1 << SLOT_BITS);
+
+	private LightSampleCache() {
+	}
+
+	private static int slot(long sectionKey) {
+		return (int) HashCommon.mix(sectionKey) & SLOT_MASK;
+	}
+
+	/**
+	 * Read before sampling and pass to {@link #put(long, int, int[])}.
+	 */
+	static int version(long sectionKey) {
+		return VERSIONS.get(slot(sectionKey));
+	}
+
+	/**
+	 * @return 16x16x16 samples in x, y, z order or null if not cached
+	 */
+	static int[] get(long sectionKey) {
+		final int slot = slot(sectionKey);
+		final Entry e = ENTRIES.get(slot);
+		return e != null && e.sectionKey == sectionKey && e.version == VERSIONS.get(slot) ? e.samples : null;
+	}
+
+	/**
+	 * Samples must not be modified after this call.
+	 */
+	static void put(long sectionKey, int version, int[] samples) {
+		final int slot = slot(sectionKey);
+
+		if (VERSIONS.get(slot) == version) {
+			ENTRIES.set(slot, new Entry(sectionKey, version, samples));
+		}
+	}
+
+	static void invalidate(long sectionKey) {
+		VERSIONS.incrementAndGet(slot(sectionKey));
+	}
+
+	static void clear() {
+		for (int i = 0; i <= SLOT_MASK; ++i) {
+			VERSIONS.incrementAndGet(i);
+			ENTRIES.set(i, null);
+		}
+	}
+
+	private static class Entry {
+		final long sectionKey;
+		final int version;
+		final int[] samples;
+
+		Entry(long sectionKey, int version, int[] samples) {
+			this.sectionKey = sectionKey;
+			this.version = version;
+			this.samples = samples;
+		}
+	}
+}
@@ -17,7 +17,6 @@
 package grondag.canvas.light;
 
 import grondag.canvas.terrain.FastRenderRegion;
-import net.minecraft.block.BlockState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
 
@@ -25,6 +24,17 @@ import net.minecraft.util.math.MathHelper;
 // TODO: look at VoxelShapes.method_1080 as a way to not propagate thru slabs
 // Also BlockState.hasSidedTransparency seems promising
 
+/**
+ * Blurs block and sky light around a region and writes the result to the region's light cache.
+ *
+ * <p>Block and sky light are blurred together, one in each 32-bit half of a long. Opaque
+ * positions hold zero light and an open flag of zero, so each blur tap is plain arithmetic:
+ * the open flag multiplies the result and the center weight absorbs the weight of opaque
+ * neighbors. Results match the branching version this replaced.
+ *
+ * <p>Unsmoothed samples are kept in {@link LightSampleCache} so margins that overlap
+ * recently smoothed neighbors are copied instead of queried from the world again.
+ */
 public class LightSmoother {
 	public static final int OPAQUE = -1;
 	private static final int BLUR_RADIUS = 2;
@@ -36,192 +46,183 @@ public class LightSmoother {
 	private static final ThreadLocal<Helper> helpers = ThreadLocal.withInitial(Helper::new);
 	private static final int INNER_DIST = 28966; // fractional part of 0xFFFF
 	private static final int OUTER_DIST = (0xFFFF - INNER_DIST) / 2;
-	private static final int INNER_PLUS = INNER_DIST + OUTER_DIST;
+	/** Rounding term for both lanes. */
+	private static final long ROUND = 0x00007FFF00007FFFL;
+	/** Low 16 bits of both lanes after the fixed-point shift. */
+	private static final long LANE_MASK = 0x0000FFFF0000FFFFL;
+	/** Blur passes never read beyond this distance from the volume boundary. */
+	private static final int WEIGHT_MIN = MARGIN - BLUR_RADIUS - 1;
+	private static final int WEIGHT_MAX = POS_DIAMETER - WEIGHT_MIN;
 
 	public static void computeSmoothedBrightness(FastRenderRegion region) {
 		final Helper help = helpers.get();
-		final BlockPos.Mutable smoothPos = help.smoothPos;
-		final int[] sky = help.a;
-		final int[] block = help.b;
+		help.sample(region);
+
+		final long[] light = help.a;
+		final long[] work = help.b;
+		smooth(BLUR_RADIUS + 1, light, work, help);
+		smooth(BLUR_RADIUS, work, light, help);
 
 		final int minX = region.originX() - MARGIN;
 		final int minY = region.originY() - MARGIN;
 		final int minZ = region.originZ() - MARGIN;
-
-		for (int x = 0; x < POS_DIAMETER; x++) {
-			for (int y = 0; y < POS_DIAMETER; y++) {
-				for (int z = 0; z < POS_DIAMETER; z++) {
-					final int bx = x + minX;
-					final int by = y + minY;
-					final int bz = z + minZ;
-					smoothPos.set(bx, by, bz);
-
-					final BlockState state = region.getBlockState(bx, by, bz);
-					// don't use cache here because we are populating the cache
-					final int packedLight = region.directBrightness(smoothPos);
-
-					final boolean opaque = state.isOpaqueFullCube(region, smoothPos);
-
-					final int i = index(x, y, z);
-					if (opaque) {
-						block[i] = OPAQUE;
-						sky[i] = OPAQUE;
-					} else if (packedLight == 0) {
-						block[i] = 0;
-						sky[i] = 0;
-					} else {
-						block[i] = (packedLight & 0xFF);
-						sky[i] = ((packedLight >>> 16) & 0xFF);
-					}
-				}
-			}
-		}
-
-		final int[] work = help.c;
-		smooth(BLUR_RADIUS + 1, block, work);
-		smooth(BLUR_RADIUS, work, block);
-		//        smooth(1, block, work);
-		//        float[] swap = block;
-		//        block = work;
-		//        work = swap;
-
-		smooth(BLUR_RADIUS + 1, sky, work);
-		smooth(BLUR_RADIUS, work, sky);
-		//        smooth(1, sky, work);
-		//        swap = sky;
-		//        sky = work;
-		//        work = swap;
-
 		final int limit = 16 + MARGIN + 1;
 
-		for (int x = MARGIN - 1; x < limit; x++) {
+		for (int z = MARGIN - 1; z < limit; z++) {
 			for (int y = MARGIN - 1; y < limit; y++) {
-				for (int z = MARGIN - 1; z < limit; z++) {
-					final int i = index(x, y, z);
-					final int b = MathHelper.clamp(((block[i]) * 104 + 51) / 100, 0, 240);
-					final int k = MathHelper.clamp(((sky[i]) * 104 + 51) / 100, 0, 240);
+				for (int x = MARGIN - 1; x < limit; x++) {
+					final long v = light[index(x, y, z)];
+					final int b = MathHelper.clamp(((int) v * 104 + 51) / 100, 0, 240);
+					final int k = MathHelper.clamp(((int) (v >>> 32) * 104 + 51) / 100, 0, 240);
 					region.setLightCache(x + minX, y + minY, z + minZ, ((b + 2) & 0b11111100) | (((k + 2) & 0b11111100) << 16));
 				}
 			}
 		}
 	}
 
+	/**
+	 * Removes cached samples for the region containing the given block position.
+	 * Call when blocks or light in that region change.
+	 */
+	public static void invalidate(int x, int y, int z) {
+		LightSampleCache.invalidate(BlockPos.asLong(x & 0xFFFFFFF0, y & 0xFFFFFFF0, z & 0xFFFFFFF0));
+	}
+
+	public static void clearCache() {
+		LightSampleCache.clear();
+	}
+
 	private static int index(int x, int y, int z) {
 		return x + y * Y_INC + z * Z_INC;
 	}
 
-	private static void smooth(int margin, int[] src, int[] dest) {
-		final int xBase = MARGIN - margin;
-		final int xLimit = POS_DIAMETER - MARGIN + margin;
+	private static void smooth(int margin, long[] src, long[] dest, Helper help) {
+		final int base = MARGIN - margin;
+		final int limit = POS_DIAMETER - MARGIN + margin;
 
-		final int yBase = xBase * Y_INC;
-		final int yLimit = xLimit * Y_INC;
-		final int zBase = xBase * Z_INC;
-		final int zLimit = xLimit * Z_INC;
+		pass(src, dest, help.open, help.weightX, 1, base, limit);
+		// Note arrays are swapped here
+		pass(dest, src, help.open, help.weightY, Y_INC, base, limit);
+		// Arrays are swapped back to original roles here
+		pass(src, dest, help.open, help.weightZ, Z_INC, base, limit);
+	}
 
+	/**
+	 * One 3-tap blur along the axis with the given index increment, row by row.
+	 */
+	private static void pass(long[] src, long[] dest, long[] open, int[] weight, int inc, int base, int limit) {
+		final int rowLength = limit - base;
 
-		// X PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
+		for (int z = base; z < limit; z++) {
+			for (int y = base; y < limit; y++) {
+				int i = index(base, y, z);
+				final int rowLimit = i + rowLength;
 
-					final int c = src[i];
-					if (c == OPAQUE) {
-						dest[i] = OPAQUE;
-						continue;
-					}
+				for (; i < rowLimit; i++) {
+					dest[i] = open[i] * ((((src[i - inc] + src[i + inc]) * OUTER_DIST + src[i] * weight[i] + ROUND) >>> 16) & LANE_MASK);
+				}
+			}
+		}
+	}
 
-					//                    int a = src[index(x + 1, y, z)];
-					//                    int b = src[index(x - 1, y, z)];
-					final int a = src[i + 1];
-					final int b = src[i - 1];
+	private static class Helper {
+		private final long[] a = new long[POS_COUNT];
+		private final long[] b = new long[POS_COUNT];
+		/** 1 if light passes through, 0 if opaque. */
+		private final long[] open = new long[POS_COUNT];
+		/** Center weight for each axis: inner weight plus the weight of opaque neighbors. */
+		private final int[] weightX = new int[POS_COUNT];
+		private final int[] weightY = new int[POS_COUNT];
+		private final int[] weightZ = new int[POS_COUNT];
+
+		/**
+		 * Fills light and open flags for the region and its margin, one source section at a time.
+		 */
+		private void sample(FastRenderRegion region) {
+			final int originX = region.originX();
+			final int originY = region.originY();
+			final int originZ = region.originZ();
+
+			for (int sz = -1; sz <= 1; ++sz) {
+				for (int sy = -1; sy <= 1; ++sy) {
+					for (int sx = -1; sx <= 1; ++sx) {
+						final int sectionX = originX + (sx << 4);
+						final int sectionY = originY + (sy << 4);
+						final int sectionZ = originZ + (sz << 4);
+						final long sectionKey = BlockPos.asLong(sectionX, sectionY, sectionZ);
+						int[] samples = LightSampleCache.get(sectionKey);
+
+						if (samples == null && sx == 0 && sy == 0 && sz == 0) {
+							final int version = LightSampleCache.version(sectionKey);
+							samples = sampleSection(region, sectionX, sectionY, sectionZ);
+							LightSampleCache.put(sectionKey, version, samples);
+						}
 
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							dest[i] = c;
-						} else {
-							dest[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
+						final int minX = sx == -1 ? 16 - MARGIN : 0;
+						final int maxX = sx == 1 ? MARGIN : 16;
+						final int minY = sy == -1 ? 16 - MARGIN : 0;
+						final int maxY = sy == 1 ? MARGIN : 16;
+						final int minZ = sz == -1 ? 16 - MARGIN : 0;
+						final int maxZ = sz == 1 ? MARGIN : 16;
+						// volume position of section origin
+						final int offset = index(MARGIN + (sx << 4), MARGIN + (sy << 4), MARGIN + (sz << 4));
+
+						for (int z = minZ; z < maxZ; ++z) {
+							for (int y = minY; y < maxY; ++y) {
+								for (int x = minX; x < maxX; ++x) {
+									final int raw = samples == null
+											? region.lightSample(sectionX + x, sectionY + y, sectionZ + z)
+											: samples[x | (y << 4) | (z << 8)];
+									set(offset + index(x, y, z), raw);
+								}
+							}
 						}
-					} else if (b == OPAQUE) {
-						dest[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						dest[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
 					}
 				}
 			}
-		}
 
-		// Y PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
-
-					// Note arrays are swapped here
-					final int c = dest[i];
-					if (c == OPAQUE) {
-						src[i] = OPAQUE;
-						continue;
-					}
+			computeWeights(weightX, 1);
+			computeWeights(weightY, Y_INC);
+			computeWeights(weightZ, Z_INC);
+		}
 
-					//                    int a = dest[index(x, y - 1, z)];
-					//                    int b = dest[index(x, y + 1, z)];
-					final int a = dest[i + Y_INC];
-					final int b = dest[i - Y_INC];
+		private static int[] sampleSection(FastRenderRegion region, int sectionX, int sectionY, int sectionZ) {
+			final int[] result = new int[4096];
 
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							src[i] = c;
-						} else {
-							src[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-						}
-					} else if (b == OPAQUE) {
-						src[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						src[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
+			for (int z = 0; z < 16; ++z) {
+				for (int y = 0; y < 16; ++y) {
+					for (int x = 0; x < 16; ++x) {
+						result[x | (y << 4) | (z << 8)] = region.lightSample(sectionX + x, sectionY + y, sectionZ + z);
 					}
 				}
 			}
+
+			return result;
+		}
+
+		private void set(int i, int raw) {
+			if (raw == OPAQUE) {
+				a[i] = 0;
+				open[i] = 0;
+			} else {
+				a[i] = (raw & 0xFF) | ((long) ((raw >>> 16) & 0xFF) << 32);
+				open[i] = 1;
+			}
 		}
-		// Z PASS
-		for (int x = xBase; x < xLimit; x++) {
-			for (int y = yBase; y < yLimit; y += Y_INC) {
-				for (int z = zBase; z < zLimit; z += Z_INC) {
-					final int i = x + y + z;
-
-					// Arrays are swapped back to original roles here
-					final int c = src[i];
-					if (c == OPAQUE) {
-						dest[i] = OPAQUE;
-						continue;
-					}
 
-					//                    int a = src[index(x, y, z - 1)];
-					//                    int b = src[index(x, y, z + 1)];
-					final int a = src[i + Z_INC];
-					final int b = src[i - Z_INC];
+		private void computeWeights(int[] weight, int inc) {
+			final long[] open = this.open;
 
-					if (a == OPAQUE) {
-						if (b == OPAQUE) {
-							dest[i] = c;
-						} else {
-							dest[i] = (b * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-						}
-					} else if (b == OPAQUE) {
-						dest[i] = (a * OUTER_DIST + c * INNER_PLUS + 0x7FFF) >> 16;
-					} else {
-						dest[i] = (a * OUTER_DIST + b * OUTER_DIST + c * INNER_DIST + 0x7FFF) >> 16;
+			for (int z = WEIGHT_MIN; z < WEIGHT_MAX; z++) {
+				for (int y = WEIGHT_MIN; y < WEIGHT_MAX; y++) {
+					int i = index(WEIGHT_MIN, y, z);
+					final int rowLimit = i + WEIGHT_MAX - WEIGHT_MIN;
+
+					for (; i < rowLimit; i++) {
+						weight[i] = INNER_DIST + OUTER_DIST * (2 - (int) (open[i - inc] + open[i + inc]));
 					}
 				}
 			}
 		}
 	}
-
-	private static class Helper {
-		private final BlockPos.Mutable smoothPos = new BlockPos.Mutable();
-		private final int[] a = new int[POS_COUNT];
-		private final int[] b = new int[POS_COUNT];
-		private final int[] c = new int[POS_COUNT];
-	}
 }
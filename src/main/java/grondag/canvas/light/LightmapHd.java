@@ -16,43 +16,76 @@
 
 package grondag.canvas.light;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import grondag.canvas.CanvasMod;
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import net.minecraft.client.resource.language.I18n;
-import net.minecraft.util.math.MathHelper;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import net.minecraft.client.resource.language.I18n;
 
+/**
+ * Light and AO for one face, stored in a slot of the HD lightmap atlas.
+ *
+ * <p>Terrain builds retain the lightmaps their quads use (see {@link LightmapHdRefs}) until
+ * the region's drawables are replaced or closed. When the atlas is full, a clock sweep
+ * evicts lightmaps that are not retained and were not used since the previous sweep,
+ * and their slots are reused.
+ */
 public class LightmapHd {
-	// PERF: use Fermion cache
-	static final Object2ObjectOpenHashMap<AoFaceData, LightmapHd> MAP = new Object2ObjectOpenHashMap<>(MathHelper.smallestEncompassingPowerOfTwo(LightmapSizer.maxCount), LightmapSizer.maxCount / (float) MathHelper.smallestEncompassingPowerOfTwo(LightmapSizer.maxCount));
-	private static final AtomicInteger nextIndex = new AtomicInteger();
+	/** Guards slot allocation, eviction and all writes to MAP. */
+	private static final Object LOCK = new Object();
+	private static final int EVICTED = -1;
+	/** Slots freed per sweep so sweeps are amortized over many allocations. */
+	private static final int EVICT_BATCH = Math.max(1, LightmapSizer.maxCount / 256);
+	private static final IntArrayFIFOQueue FREE_SLOTS = new IntArrayFIFOQueue();
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+	private static volatile LightmapHdMap MAP = new LightmapHdMap(LightmapSizer.maxCount);
+	private static LightmapHd[] slots = new LightmapHd[LightmapSizer.maxCount];
+	private static int nextSlot = 0;
+	private static int clockHand = 0;
 	private static boolean errorNoticeNeeded = true;
+	private static LightmapHd overflow;
+
 	public final int uMinImg;
 	public final int vMinImg;
-	private final int[] light;
+	// packed face data, see AoFaceData.updateHash
+	private final long key0;
+	private final long key1;
+	private final long key2;
+	private final long key3;
+	final int hash;
+	private final AtomicInteger refCount = new AtomicInteger();
+	/** Clock reference bit. */
+	private volatile boolean recentlyUsed = true;
 
-	private LightmapHd(AoFaceData faceData) {
-		final int index = nextIndex.getAndIncrement();
-		final int s = index % LightmapSizer.mapsPerAxis;
-		final int t = index / LightmapSizer.mapsPerAxis;
+	private LightmapHd(AoFaceData faceData, int slot) {
+		key0 = faceData.key0;
+		key1 = faceData.key1;
+		key2 = faceData.key2;
+		key3 = faceData.key3;
+		hash = faceData.hashCode();
+		final int s = slot % LightmapSizer.mapsPerAxis;
+		final int t = slot / LightmapSizer.mapsPerAxis;
 		uMinImg = s * LightmapSizer.paddedSize;
 		vMinImg = t * LightmapSizer.paddedSize;
-		light = new int[LightmapSizer.lightmapPixels];
-
+	}
 
-		if (index >= LightmapSizer.maxCount) {
-			if (errorNoticeNeeded) {
-				CanvasMod.LOG.warn(I18n.translate("error.canvas.fail_create_lightmap"));
-				errorNoticeNeeded = false;
-			}
-		} else {
-			// PERF: pool these and the main array - not needed after upload
+	/**
+	 * Per-thread buffers for lightmap computation. Pixels are copied to the
+	 * texture image when the lightmap is created and not needed after that.
+	 */
+	private static class Scratch {
+		final int[] light = new int[LightmapSizer.lightmapPixels];
+		final int[] aoLight = new int[LightmapSizer.lightmapPixels];
+		final int[] skyLight = new int[LightmapSizer.lightmapPixels];
+		final int[] blockLight = new int[LightmapSizer.lightmapPixels];
 
-			final int[] aoLight = new int[LightmapSizer.lightmapPixels];
-			final int[] skyLight = new int[LightmapSizer.lightmapPixels];
-			final int[] blockLight = new int[LightmapSizer.lightmapPixels];
+		int[] compute(AoFaceData faceData) {
+			final int[] light = this.light;
+			final int[] aoLight = this.aoLight;
+			final int[] skyLight = this.skyLight;
+			final int[] blockLight = this.blockLight;
 
 			// TODO: make this an option for AO debugging
 			//			Arrays.fill(skyLight, 255);
@@ -70,54 +103,191 @@ public class LightmapHd {
 				light[i] = (sky << 24) | (ao << 16) | (block << 8) | ao;
 			}
 
-			LightmapHdTexture.instance().enque(this);
+			return light;
 		}
 	}
 
 	public static String occupancyReport() {
-		final int i = nextIndex.get();
+		final int i = MAP.size();
 		return String.format("%d of %d ( %d percent )", i, LightmapSizer.maxCount, i * 100 / LightmapSizer.maxCount);
 	}
 
 	public static void reload() {
-		nextIndex.set(0);
-		MAP.clear();
-		errorNoticeNeeded = true;
+		synchronized (LOCK) {
+			MAP = new LightmapHdMap(LightmapSizer.maxCount);
+			FREE_SLOTS.clear();
+			slots = new LightmapHd[LightmapSizer.maxCount];
+			nextSlot = 0;
+			clockHand = 0;
+			errorNoticeNeeded = true;
+			overflow = null;
+		}
 	}
 
 	static int lightIndex(int u, int v) {
 		return v * LightmapSizer.paddedSize + u;
 	}
 
-	// PERF: can reduce texture consumption 8X by reusing rotations/inversions
+	boolean matches(AoFaceData faceData) {
+		return faceData.key0 == key0 && faceData.key1 == key1 && faceData.key2 == key2 && faceData.key3 == key3;
+	}
+
+	/**
+	 * Finds or creates lightmap without retaining it. Result may be evicted and its
+	 * slot reused once no region retains it, so only use for immediate rendering.
+	 */
 	public static LightmapHd find(AoFaceData faceData) {
-		LightmapHd result = MAP.get(faceData);
+		final LightmapHd result = MAP.get(faceData);
 
 		if (result == null) {
-			synchronized (MAP) {
-				result = MAP.get(faceData);
-				if (result == null) {
-					result = new LightmapHd(faceData);
-					MAP.put(faceData.clone(), result);
+			return create(faceData, false);
+		}
+
+		result.recentlyUsed = true;
+		return result;
+	}
+
+	/**
+	 * Finds or creates lightmap and increments its reference count.
+	 * Caller must {@link #release()} it when quads using it are no longer drawn.
+	 */
+	static LightmapHd findAndRetain(AoFaceData faceData) {
+		final LightmapHd result = MAP.get(faceData);
+
+		if (result != null && result.retain()) {
+			result.recentlyUsed = true;
+			return result;
+		}
+
+		return create(faceData, true);
+	}
+
+	/**
+	 * Pixels are computed before taking the lock, so concurrent misses for different
+	 * faces don't serialize. A miss that loses a race for the same face wastes its work.
+	 */
+	private static LightmapHd create(AoFaceData faceData, boolean retain) {
+		final int[] pixels = SCRATCH.get().compute(faceData);
+
+		synchronized (LOCK) {
+			final LightmapHdMap map = MAP;
+			LightmapHd result = map.get(faceData);
+
+			if (result == null) {
+				final int slot = allocateSlot();
+
+				if (slot == -1) {
+					if (errorNoticeNeeded) {
+						CanvasMod.LOG.warn(I18n.translate("error.canvas.fail_create_lightmap"));
+						errorNoticeNeeded = false;
+					}
+
+					// not mapped, so allocation is retried next time this face is seen
+					result = overflow;
+
+					if (result == null) {
+						result = new LightmapHd(faceData, LightmapSizer.maxCount);
+						overflow = result;
+					}
+				} else {
+					result = new LightmapHd(faceData, slot);
+					slots[slot] = result;
+					map.put(result);
+					LightmapHdTexture.instance().enque(result, pixels);
 				}
+			} else {
+				result.recentlyUsed = true;
+			}
+
+			if (retain) {
+				// can't fail - eviction happens under lock and removes from map
+				result.retain();
 			}
+
+			return result;
 		}
+	}
 
-		return result;
+	/** Call while holding LOCK. Returns -1 if every slot is retained. */
+	private static int allocateSlot() {
+		if (nextSlot < LightmapSizer.maxCount) {
+			return nextSlot++;
+		}
+
+		if (FREE_SLOTS.isEmpty()) {
+			evict();
+		}
+
+		return FREE_SLOTS.isEmpty() ? -1 : FREE_SLOTS.dequeueInt();
+	}
+
+	/**
+	 * Clock sweep: frees unretained lightmaps not used since the hand last passed them.
+	 */
+	private static void evict() {
+		final LightmapHd[] slots = LightmapHd.slots;
+		final int limit = slots.length;
+		int hand = clockHand;
+		int evicted = 0;
+
+		// two passes so reference bits cleared on the first can be evicted on the second
+		for (int n = limit * 2; n > 0 && evicted < EVICT_BATCH; --n) {
+			final LightmapHd map = slots[hand];
+
+			if (map != null) {
+				if (map.recentlyUsed) {
+					map.recentlyUsed = false;
+				} else if (map.refCount.compareAndSet(0, EVICTED)) {
+					MAP.remove(map);
+					slots[hand] = null;
+					FREE_SLOTS.enqueue(hand);
+					++evicted;
+				}
+			}
+
+			if (++hand == limit) {
+				hand = 0;
+			}
+		}
+
+		clockHand = hand;
 	}
 
 	/**
-	 * Handles padding
+	 * Fails if lightmap has been evicted.
 	 */
-	public int pixel(int u, int v) {
-		return light[v * LightmapSizer.paddedSize + u];
+	boolean retain() {
+		while (true) {
+			final int count = refCount.get();
+
+			if (count == EVICTED) {
+				return false;
+			}
+
+			if (refCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	void release() {
+		refCount.decrementAndGet();
+	}
+
+	public static void releaseAll(LightmapHd[] maps) {
+		for (final LightmapHd map : maps) {
+			map.release();
+		}
 	}
 
 	public int coord(MutableQuadViewImpl q, int i) {
+		final int transform = q.hdLightTransform;
+		final float qu = LightmapHdTransform.u(transform, q.u[i], q.v[i]);
+		final float qv = LightmapHdTransform.v(transform, q.u[i], q.v[i]);
 		final int u, v;
 
-		u = Math.round((uMinImg + 0.5f + q.u[i] * LightmapSizer.centerToCenterPixelDistance) * LightmapSizer.textureToBuffer);
-		v = Math.round((vMinImg + 0.5f + q.v[i] * LightmapSizer.centerToCenterPixelDistance) * LightmapSizer.textureToBuffer);
+		u = Math.round((uMinImg + 0.5f + qu * LightmapSizer.centerToCenterPixelDistance) * LightmapSizer.textureToBuffer);
+		v = Math.round((vMinImg + 0.5f + qv * LightmapSizer.centerToCenterPixelDistance) * LightmapSizer.textureToBuffer);
 
 		return u | (v << 16);
 	}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.light;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Open-addressing table of lightmaps keyed by the packed face data in {@link AoFaceData}.
+ * Lookups don't lock or allocate. All writes must hold {@link LightmapHd}'s lock.
+ *
+ * <p>Capacity is fixed because the atlas limits how many lightmaps can exist. Removal
+ * shifts later entries back, so a concurrent read can miss an entry that is present.
+ * Callers treat a miss as a hint and repeat it under the lock before creating anything.
+ */
+final class LightmapHdMap {
+	private final AtomicReferenceArray<LightmapHd> table;
+	private final int mask;
+	private volatile int size;
+
+	LightmapHdMap(int maxSize) {
+		table = new AtomicReferenceArray<>(HashCommon.arraySize(maxSize + 1, 0.5f));
+		mask = table.length() - 1;
+	}
+
+	int size() {
+		return size;
+	}
+
+	LightmapHd get(AoFaceData faceData) {
+		final AtomicReferenceArray<LightmapHd> table = this.table;
+		final int mask = this.mask;
+		int i = faceData.hashCode() & mask;
+
+		// bounded because a concurrent removal can briefly leave the probe sequence inconsistent
+		for (int n = 0; n <= mask; ++n) {
+			final LightmapHd e = table.get(i);
+
+			if (e == null) {
+				return null;
+			}
+
+			if (e.matches(faceData)) {
+				return e;
+			}
+
+			i = (i + 1) & mask;
+		}
+
+		return null;
+	}
+
+	/** Caller must hold lock and have confirmed key is absent. */
+	void put(LightmapHd lightmap) {
+		final AtomicReferenceArray<LightmapHd> table = this.table;
+		final int mask = this.mask;
+		int i = lightmap.hash & mask;
+
+		while (table.get(i) != null) {
+			i = (i + 1) & mask;
+		}
+
+		table.set(i, lightmap);
+		++size;
+	}
+
+	/** Caller must hold lock. */
+	void remove(LightmapHd lightmap) {
+		final AtomicReferenceArray<LightmapHd> table = this.table;
+		final int mask = this.mask;
+		int i = lightmap.hash & mask;
+		LightmapHd e;
+
+		while ((e = table.get(i)) != lightmap) {
+			if (e == null) {
+				return;
+			}
+
+			i = (i + 1) & mask;
+		}
+
+		// shift back entries that would no longer be reachable across the gap
+		int last = i;
+
+		while (true) {
+			i = (i + 1) & mask;
+			e = table.get(i);
+
+			if (e == null) {
+				break;
+			}
+
+			final int home = e.hash & mask;
+
+			if (last <= i ? (last >= home || home > i) : (last >= home && home > i)) {
+				table.set(last, e);
+				last = i;
+			}
+		}
+
+		table.set(last, null);
+		--size;
+	}
+}
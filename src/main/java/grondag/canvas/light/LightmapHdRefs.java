@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.light;
+
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+
+/**
+ * Lightmaps retained by a single terrain build. Each distinct lightmap is retained
+ * once per build, and the set is handed off to the built region when the build completes.
+ * Not thread-safe - owned by one render context.
+ */
+public class LightmapHdRefs {
+	public static final LightmapHd[] EMPTY = new LightmapHd[0];
+
+	private final ReferenceOpenHashSet<LightmapHd> retained = new ReferenceOpenHashSet<>();
+
+	public LightmapHd find(AoFaceData faceData) {
+		final LightmapHd result = LightmapHd.find(faceData);
+
+		if (retained.contains(result)) {
+			return result;
+		}
+
+		if (result.retain()) {
+			retained.add(result);
+			return result;
+		}
+
+		// evicted after lookup
+		final LightmapHd replacement = LightmapHd.findAndRetain(faceData);
+
+		if (!retained.add(replacement)) {
+			replacement.release();
+		}
+
+		return replacement;
+	}
+
+	/**
+	 * Retains lightmaps of quads carried over from a prior build.
+	 * Returns false if any had already been evicted, in which case
+	 * quads that reference them must not be reused.
+	 */
+	public boolean retainAll(LightmapHd[] maps) {
+		boolean result = true;
+
+		for (final LightmapHd map : maps) {
+			if (!retained.contains(map)) {
+				if (map.retain()) {
+					retained.add(map);
+				} else {
+					result = false;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Moves references held by another set into this one, for example from
+	 * a context that tessellated part of the same region.
+	 */
+	public void transferFrom(LightmapHdRefs other) {
+		for (final LightmapHd map : other.retained) {
+			if (!retained.add(map)) {
+				map.release();
+			}
+		}
+
+		other.retained.clear();
+	}
+
+	/**
+	 * Transfers ownership of retained lightmaps to the caller and clears this set.
+	 */
+	public LightmapHd[] take() {
+		if (retained.isEmpty()) {
+			return EMPTY;
+		}
+
+		final LightmapHd[] result = retained.toArray(new LightmapHd[retained.size()]);
+		retained.clear();
+		return result;
+	}
+
+	/**
+	 * Releases anything still held, for example after an abandoned build.
+	 */
+	public void releaseAll() {
+		for (final LightmapHd map : retained) {
+			map.release();
+		}
+
+		retained.clear();
+	}
+}
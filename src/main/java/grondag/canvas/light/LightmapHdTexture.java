@@ -21,18 +21,22 @@ import grondag.canvas.Configurator;
 import grondag.canvas.texture.SimpleImage;
 import grondag.canvas.texture.SimpleTexture;
 import grondag.canvas.texture.TextureData;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import org.lwjgl.opengl.GL11;
 
+import java.util.Comparator;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 @Environment(EnvType.CLIENT)
 public class LightmapHdTexture implements AutoCloseable {
 	private static final ConcurrentLinkedQueue<LightmapHd> updates = new ConcurrentLinkedQueue<>();
+	private static final Comparator<LightmapHd> UPLOAD_ORDER = (a, b) -> a.vMinImg == b.vMinImg ? Integer.compare(a.uMinImg, b.uMinImg) : Integer.compare(a.vMinImg, b.vMinImg);
 	private static LightmapHdTexture instance;
 	private final SimpleTexture texture;
 	private final SimpleImage image;
+	private final ObjectArrayList<LightmapHd> pending = new ObjectArrayList<>();
 	private int frameCounter = 0;
 
 	private LightmapHdTexture() {
@@ -65,14 +69,19 @@ public class LightmapHdTexture implements AutoCloseable {
 		texture.upload();
 	}
 
-	public void enque(LightmapHd lightmap) {
+	/**
+	 * Copies pixels to the image and schedules upload.
+	 *
+	 * @param pixels padded lightmap pixels, row-major
+	 */
+	public void enque(LightmapHd lightmap, int[] pixels) {
 		final SimpleImage image = this.image;
 		final int uMap = lightmap.uMinImg;
 		final int vMap = lightmap.vMinImg;
 
 		for (int u = 0; u < LightmapSizer.paddedSize; u++) {
 			for (int v = 0; v < LightmapSizer.paddedSize; v++) {
-				image.setPixelRGBA(uMap + u, vMap + v, lightmap.pixel(u, v));
+				image.setPixelRGBA(uMap + u, vMap + v, pixels[LightmapHd.lightIndex(u, v)]);
 			}
 		}
 
@@ -119,28 +128,37 @@ public class LightmapHdTexture implements AutoCloseable {
 
 		frameCounter = 0;
 
-		int uMin = Integer.MAX_VALUE;
-		int vMin = Integer.MAX_VALUE;
-		int uMax = Integer.MIN_VALUE;
-		int vMax = Integer.MIN_VALUE;
-
+		final ObjectArrayList<LightmapHd> pending = this.pending;
 		LightmapHd map;
+
 		while ((map = updates.poll()) != null) {
-			final int uMap = map.uMinImg;
-			final int vMap = map.vMinImg;
-			uMin = Math.min(uMin, uMap);
-			vMin = Math.min(vMin, vMap);
-			uMax = Math.max(uMax, uMap + LightmapSizer.paddedSize);
-			vMax = Math.max(vMax, vMap + LightmapSizer.paddedSize);
+			pending.add(map);
 		}
 
-		if (uMin == Integer.MAX_VALUE) {
+		if (pending.isEmpty()) {
 			return;
 		}
 
-		uMin = (uMin / 4) * 4;
-		final int w = ((uMax - uMin + 3) / 4) * 4;
+		// Recycled slots are scattered, so upload each row of maps separately
+		// instead of one rectangle that could span most of the texture.
+		pending.sort(UPLOAD_ORDER);
+		final int limit = pending.size();
+		int i = 0;
+
+		while (i < limit) {
+			final int v = pending.get(i).vMinImg;
+			final int uMin = pending.get(i).uMinImg;
+			int uMax = uMin + LightmapSizer.paddedSize;
+
+			while (++i < limit && pending.get(i).vMinImg == v) {
+				uMax = pending.get(i).uMinImg + LightmapSizer.paddedSize;
+			}
+
+			final int u = (uMin / 4) * 4;
+			final int w = ((uMax - u + 3) / 4) * 4;
+			texture.uploadPartial(u, v, Math.min(w, LightmapSizer.texSize - u), LightmapSizer.paddedSize);
+		}
 
-		texture.uploadPartial(uMin, vMin, w, vMax - vMin);
+		pending.clear();
 	}
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.light;
+
+/**
+ * Rotations and reflections of a face lighting pattern. HD lightmap interpolation treats
+ * both axes and all four quadrants alike, so the 8 orientations of a pattern produce
+ * the same tile in different orientations. Lightmaps are stored once for a canonical
+ * orientation, and vertex coordinates are transformed to sample it.
+ *
+ * <p>Transform bits are applied in order: swap u/v, then flip u, then flip v.
+ */
+final class LightmapHdTransform {
+	static final int IDENTITY = 0;
+	private static final int SWAP = 1;
+	private static final int FLIP_U = 2;
+	private static final int FLIP_V = 4;
+	private static final int TRANSFORM_COUNT = 8;
+
+	/**
+	 * For each transform, the grid cell of the input that lands in each cell of the output.
+	 */
+	private static final int[][] SOURCE = new int[TRANSFORM_COUNT][9];
+
+	static {
+		for (int op = 0; op < TRANSFORM_COUNT; ++op) {
+			for (int x = 0; x < 3; ++x) {
+				for (int y = 0; y < 3; ++y) {
+					int a = (op & SWAP) == 0 ? x : y;
+					int b = (op & SWAP) == 0 ? y : x;
+
+					if ((op & FLIP_U) != 0) {
+						a = 2 - a;
+					}
+
+					if ((op & FLIP_V) != 0) {
+						b = 2 - b;
+					}
+
+					SOURCE[op][a + b * 3] = x + y * 3;
+				}
+			}
+		}
+	}
+
+	private LightmapHdTransform() {
+	}
+
+	/**
+	 * Finds the transform that takes the given grid to its canonical orientation:
+	 * the least of all orientations compared light first, then AO.
+	 *
+	 * @param grid face data from {@link AoFaceData#toGrid(int[])}
+	 * @param out receives canonical grid
+	 * @return transform applied to reach the canonical grid
+	 */
+	static int canonicalize(int[] grid, int[] out) {
+		int best = IDENTITY;
+
+		for (int op = 1; op < TRANSFORM_COUNT; ++op) {
+			if (compare(grid, op, best) < 0) {
+				best = op;
+			}
+		}
+
+		final int[] source = SOURCE[best];
+
+		for (int k = 0; k < 9; ++k) {
+			out[k] = grid[source[k]];
+			out[k + 9] = grid[source[k] + 9];
+		}
+
+		return best;
+	}
+
+	private static int compare(int[] grid, int opA, int opB) {
+		final int[] a = SOURCE[opA];
+		final int[] b = SOURCE[opB];
+
+		for (int k = 0; k < 9; ++k) {
+			final int la = grid[a[k]];
+			final int lb = grid[b[k]];
+
+			if (la != lb) {
+				return Integer.compare(la, lb);
+			}
+		}
+
+		for (int k = 0; k < 9; ++k) {
+			final int aoA = grid[a[k] + 9];
+			final int aoB = grid[b[k] + 9];
+
+			if (aoA != aoB) {
+				return Integer.compare(aoA, aoB);
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Maps face coordinate (0-1) of the original orientation to the canonical lightmap.
+	 */
+	static float u(int op, float u, float v) {
+		final float a = (op & SWAP) == 0 ? u : v;
+		return (op & FLIP_U) == 0 ? a : 1f - a;
+	}
+
+	static float v(int op, float u, float v) {
+		final float b = (op & SWAP) == 0 ? v : u;
+		return (op & FLIP_V) == 0 ? b : 1f - b;
+	}
+}
@@ -22,7 +22,6 @@ import grondag.canvas.Configurator;
 import grondag.canvas.varia.CanvasGlHelper;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL20;
-import org.lwjgl.opengl.GL21;
 
 public class MaterialVertexFormat {
 	public final int attributeCount;
@@ -32,6 +31,11 @@ public class MaterialVertexFormat {
 	 */
 	public final int vertexStrideBytes;
 	public final int vertexStrideInts;
+
+	/**
+	 * GL type of the position element, for glVertexPointer.
+	 */
+	public final int positionGlConstant;
 	private final MaterialVertextFormatElement[] elements;
 
 	public MaterialVertexFormat(MaterialVertextFormatElement... elementsIn) {
@@ -49,6 +53,7 @@ public class MaterialVertexFormat {
 		}
 
 		attributeCount = count;
+		positionGlConstant = elements[0].glConstant;
 		vertexStrideBytes = bytes;
 		vertexStrideInts = bytes / 4;
 	}
@@ -78,7 +83,7 @@ public class MaterialVertexFormat {
 
 			if (e.attributeName == null) {
 				assert i == 0 : "position element must be first";
-				GlStateManager.vertexPointer(3, GL21.GL_FLOAT, vertexStrideBytes, memPointer);
+				GlStateManager.vertexPointer(3, positionGlConstant, vertexStrideBytes, memPointer);
 				GlStateManager.enableClientState(GL11.GL_VERTEX_ARRAY);
 			} else {
 				if (Configurator.logGlStateChanges) {
@@ -24,10 +24,12 @@ import static grondag.canvas.material.MaterialVertextFormatElement.BASE_TEX_2F;
 import static grondag.canvas.material.MaterialVertextFormatElement.BASE_TEX_2US;
 import static grondag.canvas.material.MaterialVertextFormatElement.HD_LIGHTMAP_2US;
 import static grondag.canvas.material.MaterialVertextFormatElement.LIGHTMAPS_4UB;
+import static grondag.canvas.material.MaterialVertextFormatElement.MATERIAL_1US;
 import static grondag.canvas.material.MaterialVertextFormatElement.MATERIAL_2US;
 import static grondag.canvas.material.MaterialVertextFormatElement.NORMAL_AO_4B;
 import static grondag.canvas.material.MaterialVertextFormatElement.NORMAL_FLAGS_4UB;
 import static grondag.canvas.material.MaterialVertextFormatElement.POSITION_3F;
+import static grondag.canvas.material.MaterialVertextFormatElement.POSITION_3S;
 
 // WIP2: remove and clean up
 // encoding may be different and may depend on feature configuration
@@ -39,7 +41,6 @@ public final class MaterialVertexFormats {
 		}
 	}
 
-	// PERF: try quantized vertex format
 	public static final MaterialVertexFormat VANILLA_BLOCKS_AND_ITEMS = new MaterialVertexFormat(
 		POSITION_3F,
 		BASE_RGBA_4UB,
@@ -48,6 +49,22 @@ public final class MaterialVertexFormats {
 		NORMAL_AO_4B,
 		MATERIAL_2US);
 
+	/**
+	 * Solid terrain format with 16-bit fixed-point position: 24 bytes vs 32.
+	 * Position is in units of 1 / {@link #COMPACT_POSITION_SCALE} block, enough
+	 * for render cube coordinates with room for geometry that extends past the cube.
+	 * Not used for translucent terrain because quad sorting reads float positions.
+	 */
+	public static final MaterialVertexFormat COMPACT_TERRAIN = new MaterialVertexFormat(
+		POSITION_3S,
+		MATERIAL_1US,
+		BASE_RGBA_4UB,
+		BASE_TEX_2US,
+		LIGHTMAPS_4UB,
+		NORMAL_AO_4B);
+
+	public static final float COMPACT_POSITION_SCALE = 64f;
+
 	public static final MaterialVertexFormat HD_TERRAIN = new MaterialVertexFormat(
 		POSITION_3F,
 		BASE_RGBA_4UB,
@@ -86,6 +103,18 @@ public final class MaterialVertexFormats {
 	public static final int MATERIAL_QUAD_STRIDE = MATERIAL_VERTEX_STRIDE * 4;
 
 	public static MaterialVertexFormat get(EncodingContext context, boolean translucent) {
-		return context == EncodingContext.TERRAIN && Configurator.hdLightmaps() ? HD_TERRAIN : VANILLA_BLOCKS_AND_ITEMS;
+		if (context == EncodingContext.TERRAIN) {
+			if (Configurator.hdLightmaps()) {
+				return HD_TERRAIN;
+			} else if (!translucent && useCompactTerrain()) {
+				return COMPACT_TERRAIN;
+			}
+		}
+
+		return VANILLA_BLOCKS_AND_ITEMS;
+	}
+
+	public static boolean useCompactTerrain() {
+		return Configurator.compactTerrainVertex && !Configurator.hdLightmaps();
 	}
 }
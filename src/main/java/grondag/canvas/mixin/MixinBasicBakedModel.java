@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.mixin;
+
+import grondag.canvas.apiimpl.rendercontext.BakedQuadCache;
+import grondag.canvas.mixinterface.BasicBakedModelExt;
+import org.spongepowered.asm.mixin.Mixin;
+
+import net.minecraft.client.render.model.BasicBakedModel;
+
+@Mixin(BasicBakedModel.class)
+public class MixinBasicBakedModel implements BasicBakedModelExt {
+	// models are rebuilt on resource reload, so cache lifetime matches the quads it holds
+	private final BakedQuadCache quadCache = new BakedQuadCache();
+
+	@Override
+	public BakedQuadCache canvas_quadCache() {
+		return quadCache;
+	}
+}
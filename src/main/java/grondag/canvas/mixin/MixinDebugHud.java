@@ -22,6 +22,7 @@ import grondag.canvas.Configurator;
 import grondag.canvas.buffer.GlBufferAllocator;
 import grondag.canvas.buffer.TransferBufferAllocator;
 import grondag.canvas.light.LightmapHd;
+import grondag.canvas.terrain.occlusion.region.OcclusionBoxCache;
 import grondag.canvas.wip.encoding.WipVertexCollectorImpl;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -43,5 +44,6 @@ public class MixinDebugHud {
 		list.add(TransferBufferAllocator.debugString());
 		list.add(GlBufferAllocator.debugString());
 		list.add(WipVertexCollectorImpl.INT_STREAM_PROVIDER.report());
+		list.add(OcclusionBoxCache.debugString());
 	}
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.mixin;
+
+import grondag.canvas.mixinterface.EntityExt;
+import org.spongepowered.asm.mixin.Mixin;
+
+import net.minecraft.entity.Entity;
+
+@Mixin(Entity.class)
+public class MixinEntity implements EntityExt {
+	private int canvas_visibilityVersion = -1;
+	private long canvas_visibilityPos;
+	private int canvas_visibilitySize;
+	private boolean canvas_isVisible;
+
+	@Override
+	public int canvas_visibilityVersion() {
+		return canvas_visibilityVersion;
+	}
+
+	@Override
+	public long canvas_visibilityPos() {
+		return canvas_visibilityPos;
+	}
+
+	@Override
+	public int canvas_visibilitySize() {
+		return canvas_visibilitySize;
+	}
+
+	@Override
+	public boolean canvas_isVisible() {
+		return canvas_isVisible;
+	}
+
+	@Override
+	public void canvas_setVisibility(int version, long pos, int size, boolean isVisible) {
+		canvas_visibilityVersion = version;
+		canvas_visibilityPos = pos;
+		canvas_visibilitySize = size;
+		canvas_isVisible = isVisible;
+	}
+}
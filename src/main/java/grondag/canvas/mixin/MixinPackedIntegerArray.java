@@ -17,6 +17,7 @@
 package grondag.canvas.mixin;
 
 import grondag.canvas.mixinterface.PackedIntegerArrayExt;
+import grondag.canvas.terrain.PackedSectionSnapshot;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.minecraft.util.collection.PackedIntegerArray;
 import org.spongepowered.asm.mixin.Mixin;
@@ -55,4 +56,9 @@ public abstract class MixinPackedIntegerArray implements PackedIntegerArrayExt {
 			}
 		}
 	}
+
+	@Override
+	public void canvas_copyTo(PackedSectionSnapshot snapshot) {
+		snapshot.load(storage, elementBits, field_24079, maxValue);
+	}
 }
@@ -40,4 +40,10 @@ public abstract class MixinPalettedContainer<T> implements PalettedContainerExt
 	public PaletteCopy canvas_paletteCopy() {
 		return ChunkPaletteCopier.captureCopy((Palette<BlockState>) palette, data, (BlockState) defaultValue);
 	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public PaletteCopy canvas_paletteSnapshot() {
+		return ChunkPaletteCopier.captureSnapshot((Palette<BlockState>) palette, data, (BlockState) defaultValue);
+	}
 }
@@ -28,7 +28,7 @@ import net.minecraft.world.chunk.WorldChunk;
 
 @Mixin(WorldChunk.class)
 public class MixinWorldChunk implements WorldChunkExt {
-	private @Nullable
+	private volatile @Nullable
 	ChunkColorCache colorCache;
 	@Shadow
 	private World world;
@@ -37,9 +37,16 @@ public class MixinWorldChunk implements WorldChunkExt {
 	public ChunkColorCache canvas_colorCache() {
 		ChunkColorCache result = colorCache;
 
-		if (result == null || result.isInvalid()) {
-			result = new ChunkColorCache((ClientWorld) world, (WorldChunk) (Object) this);
-			colorCache = result;
+		if (result == null) {
+			// one cache per chunk so concurrent workers share computed colors
+			synchronized (this) {
+				result = colorCache;
+
+				if (result == null) {
+					result = new ChunkColorCache((ClientWorld) world, (WorldChunk) (Object) this);
+					colorCache = result;
+				}
+			}
 		}
 
 		return result;
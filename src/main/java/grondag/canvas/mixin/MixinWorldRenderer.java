@@ -127,6 +127,19 @@ public class MixinWorldRenderer implements WorldRendererExt {
 		((CanvasWorldRenderer) (Object) this).scheduleRegionRender(x, y, z, urgent);
 	}
 
+	@Inject(at = @At("HEAD"), method = "scheduleSectionRender", cancellable = true)
+	private void onScheduleSectionRender(BlockPos pos, boolean important, CallbackInfo ci) {
+		((CanvasWorldRenderer) (Object) this).scheduleBlockRender(pos, important);
+		ci.cancel();
+	}
+
+	// vanilla schedules every section touched by the box plus a one-block margin, which would dirty whole regions
+	@Inject(at = @At("HEAD"), method = "scheduleBlockRenders(IIIIII)V", cancellable = true)
+	private void onScheduleBlockRenders(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, CallbackInfo ci) {
+		((CanvasWorldRenderer) (Object) this).scheduleBlockRenders(minX, minY, minZ, maxX, maxY, maxZ, false);
+		ci.cancel();
+	}
+
 	@Redirect(method = "reload", at = @At(value = "FIELD", target = "Lnet/minecraft/client/options/GameOptions;viewDistance:I", ordinal = 1))
 	private int onReloadZeroChunkStorage(GameOptions options) {
 		return 0;
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.mixinterface;
+
+/**
+ * Last occlusion result for an entity, reused while the terrain visibility
+ * version, the entity's block position and its size in blocks are unchanged.
+ */
+public interface EntityExt {
+	int canvas_visibilityVersion();
+
+	long canvas_visibilityPos();
+
+	int canvas_visibilitySize();
+
+	boolean canvas_isVisible();
+
+	void canvas_setVisibility(int version, long pos, int size, boolean isVisible);
+}
@@ -16,8 +16,11 @@
 
 package grondag.canvas.mixinterface;
 
+import grondag.canvas.terrain.PackedSectionSnapshot;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 public interface PackedIntegerArrayExt {
 	void canvas_fastForEach(IntArrayList list);
+
+	void canvas_copyTo(PackedSectionSnapshot snapshot);
 }
@@ -20,4 +20,6 @@ import grondag.canvas.terrain.ChunkPaletteCopier.PaletteCopy;
 
 public interface PalettedContainerExt {
 	PaletteCopy canvas_paletteCopy();
+
+	PaletteCopy canvas_paletteSnapshot();
 }
@@ -41,6 +41,21 @@ import net.minecraft.util.math.Vec3d;
 @Environment(EnvType.CLIENT)
 public class CanvasFrustum extends Frustum {
 	private static final float MIN_GAP = 0.0001f;
+
+	// flags for batch column tests - set if column crosses the plane
+	private static final int LEFT_PLANE = 1;
+	private static final int RIGHT_PLANE = 2;
+	private static final int NEAR_PLANE = 4;
+	private static final int TOP_PLANE = 8;
+	private static final int BOTTOM_PLANE = 16;
+	// set if column is entirely outside any plane
+	private static final int OUTSIDE_COLUMN = 32;
+	private static final int ALL_LEVELS = 0xFFFF;
+
+	/**
+	 * Camera-relative center y of regions at each level in a column, for batch tests.
+	 */
+	private final float[] levelY = new float[16];
 	private final Matrix4f mvpMatrix = new Matrix4f();
 	private final Matrix4fExt lastProjectionMatrix = (Matrix4fExt) (Object) new Matrix4f();
 	private final Matrix4fExt lastModelMatrix = (Matrix4fExt) (Object) new Matrix4f();
@@ -267,6 +282,107 @@ public class CanvasFrustum extends Frustum {
 		return !(cx * bottomX + cy * bottomY + cz * bottomZ + bottomRegionExtent > MIN_GAP);
 	}
 
+	/**
+	 * Batch version of {@link #isRegionVisible(BuiltRenderRegion)} for all regions in a set of
+	 * chunk columns. Columns are tested first. Regions in columns outside any plane are not tested,
+	 * and planes a column is entirely inside are skipped for its regions.  Loops run over
+	 * primitive arrays with no per-column branching until regions are tested.
+	 *
+	 * @param originX block x origin of each column
+	 * @param originZ block z origin of each column
+	 * @param count number of columns
+	 * @param centerX scratch, length at least count
+	 * @param centerZ scratch, length at least count
+	 * @param planeFlags scratch, length at least count
+	 * @param results receives bit n set if region at y = n * 16 in the column is visible
+	 */
+	public void testRegionColumns(int[] originX, int[] originZ, int count, float[] centerX, float[] centerZ, int[] planeFlags, int[] results) {
+		final double viewX = lastViewX;
+		final double viewZ = lastViewZ;
+
+		for (int i = 0; i < count; ++i) {
+			centerX[i] = (float) (originX[i] + 8 - viewX);
+			centerZ[i] = (float) (originZ[i] + 8 - viewZ);
+			planeFlags[i] = 0;
+		}
+
+		final float[] levelY = this.levelY;
+
+		for (int i = 0; i < 16; ++i) {
+			levelY[i] = (float) ((i << 4) + 8 - lastViewY);
+		}
+
+		final float columnY = (float) (128 - lastViewY);
+
+		testColumnPlane(centerX, centerZ, count, planeFlags, leftX, columnY * leftY + leftW, leftZ, 8 * leftXe + 128 * leftYe + 8 * leftZe, LEFT_PLANE);
+		testColumnPlane(centerX, centerZ, count, planeFlags, rightX, columnY * rightY + rightW, rightZ, 8 * rightXe + 128 * rightYe + 8 * rightZe, RIGHT_PLANE);
+		testColumnPlane(centerX, centerZ, count, planeFlags, nearX, columnY * nearY + nearW, nearZ, 8 * nearXe + 128 * nearYe + 8 * nearZe, NEAR_PLANE);
+		testColumnPlane(centerX, centerZ, count, planeFlags, topX, columnY * topY + topW, topZ, 8 * topXe + 128 * topYe + 8 * topZe, TOP_PLANE);
+		testColumnPlane(centerX, centerZ, count, planeFlags, bottomX, columnY * bottomY + bottomW, bottomZ, 8 * bottomXe + 128 * bottomYe + 8 * bottomZe, BOTTOM_PLANE);
+
+		for (int i = 0; i < count; ++i) {
+			final int flags = planeFlags[i];
+
+			if ((flags & OUTSIDE_COLUMN) != 0) {
+				results[i] = 0;
+			} else if (flags == 0) {
+				results[i] = ALL_LEVELS;
+			} else {
+				results[i] = testColumnLevels(centerX[i], centerZ[i], flags);
+			}
+		}
+	}
+
+	private static void testColumnPlane(float[] centerX, float[] centerZ, int count, int[] planeFlags, float x, float yw, float z, float extent, int planeFlag) {
+		for (int i = 0; i < count; ++i) {
+			final float d = centerX[i] * x + centerZ[i] * z + yw;
+			// outside if the nearest point is beyond the plane, crossing unless the farthest point is inside
+			planeFlags[i] |= (d - extent > MIN_GAP ? OUTSIDE_COLUMN : 0) | (d + extent > MIN_GAP ? planeFlag : 0);
+		}
+	}
+
+	private int testColumnLevels(float cx, float cz, int flags) {
+		int result = ALL_LEVELS;
+
+		if ((flags & LEFT_PLANE) != 0) {
+			result &= levelsInside(cx * leftX + cz * leftZ + leftRegionExtent, leftY);
+		}
+
+		if ((flags & RIGHT_PLANE) != 0) {
+			result &= levelsInside(cx * rightX + cz * rightZ + rightRegionExtent, rightY);
+		}
+
+		if ((flags & NEAR_PLANE) != 0) {
+			result &= levelsInside(cx * nearX + cz * nearZ + nearRegionExtent, nearY);
+		}
+
+		if ((flags & TOP_PLANE) != 0) {
+			result &= levelsInside(cx * topX + cz * topZ + topRegionExtent, topY);
+		}
+
+		if ((flags & BOTTOM_PLANE) != 0) {
+			result &= levelsInside(cx * bottomX + cz * bottomZ + bottomRegionExtent, bottomY);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Bits for column levels where regions are not entirely beyond the plane.
+	 */
+	private int levelsInside(float base, float y) {
+		final float[] levelY = this.levelY;
+		int result = 0;
+
+		for (int i = 0; i < 16; ++i) {
+			if (!(base + levelY[i] * y > MIN_GAP)) {
+				result |= 1 << i;
+			}
+		}
+
+		return result;
+	}
+
 	private void extractPlanes() {
 		final Matrix4fExt matrix = (Matrix4fExt) (Object) mvpMatrix;
 		final float a00 = matrix.a00();
@@ -45,6 +45,7 @@ import grondag.canvas.compat.MaliLibHolder;
 import grondag.canvas.compat.SatinHolder;
 import grondag.canvas.compat.VoxelMapHolder;
 import grondag.canvas.light.LightmapHdTexture;
+import grondag.canvas.mixinterface.EntityExt;
 import grondag.canvas.mixinterface.WorldRendererExt;
 import grondag.canvas.pipeline.BufferDebug;
 import grondag.canvas.pipeline.CanvasFrameBufferHacks;
@@ -123,6 +124,8 @@ import net.minecraft.world.World;
 
 public class CanvasWorldRenderer extends WorldRenderer {
 	public static final int MAX_REGION_COUNT = (32 * 2 + 1) * (32 * 2 + 1) * 16;
+	// entities spanning more blocks than this on any axis skip octant tests
+	private static final int MAX_OCTANT_TEST_BLOCKS = 32;
 	private static CanvasWorldRenderer instance;
 	public final TerrainOccluder terrainOccluder = new TerrainOccluder();
 	// TODO: redirect uses in MC WorldRenderer
@@ -151,6 +154,8 @@ public class CanvasWorldRenderer extends WorldRenderer {
 	private Vec3d cameraPos;
 	private int lastRegionDataVersion = -1;
 	private int visibleRegionCount = 0;
+	// incremented when terrain iteration results are published - cached entity visibility is invalid if changed
+	private int entityVisibilityVersion = 0;
 	final TerrainLayerRenderer TRANSLUCENT = new TerrainLayerRenderer("translucemt", ShaderContext.TERRAIN_TRANSLUCENT, this::sortTranslucentTerrain);
 
 	private final RenderContextState contextState = new RenderContextState();
@@ -236,6 +241,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		DitherTexture.instance().initializeIfNeeded();
 		world = clientWorld;
 		visibleRegionCount = 0;
+		++entityVisibilityVersion;
 		renderRegionStorage.clear();
 		Arrays.fill(visibleRegions, null);
 		terrainIterator.reset();
@@ -306,6 +312,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 				visibleRegionCount = size;
 				System.arraycopy(terrainIterator.visibleRegions, 0, visibleRegions, 0, size);
 				assert size == 0 || visibleRegions[0] != null;
+				++entityVisibilityVersion;
 				scheduleOrBuild(terrainIterator.updateRegions);
 				terrainIterator.reset();
 				state = TerrainIterator.IDLE;
@@ -337,6 +344,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 				final int size = terrainIterator.visibleRegionCount;
 				visibleRegionCount = size;
 				System.arraycopy(terrainIterator.visibleRegions, 0, visibleRegions, 0, size);
+				++entityVisibilityVersion;
 				scheduleOrBuild(terrainIterator.updateRegions);
 				terrainIterator.reset();
 			}
@@ -354,11 +362,13 @@ public class CanvasWorldRenderer extends WorldRenderer {
 			return;
 		}
 
+		final long now = Util.getMeasuringTimeNano();
+
 		for (int i = 0; i < limit; ++i) {
 			final BuiltRenderRegion region = updateRegions.get(i);
 
 			if (region.needsRebuild()) {
-				if (region.needsImportantRebuild() || region.isNear()) {
+				if (region.needsImportantRebuild() || (region.isNear() && !region.isRebuildDeferred(now))) {
 					regionsToRebuild.remove(region);
 					region.rebuildOnMainThread();
 					region.markBuilt();
@@ -371,6 +381,12 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 	private void buildNearRegion(BuiltRenderRegion region) {
 		if (region.needsRebuild()) {
+			if (region.isRebuildDeferred(Util.getMeasuringTimeNano())) {
+				// busy region - let changes accumulate, will be picked up by updateRegions
+				regionsToRebuild.add(region);
+				return;
+			}
+
 			regionsToRebuild.remove(region);
 			region.rebuildOnMainThread();
 			region.markBuilt();
@@ -585,18 +601,26 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 		final int visibleRegionCount = this.visibleRegionCount;
 		final Set<BlockEntity> noCullingBlockEntities = wr.canvas_noCullingBlockEntities();
+		final boolean cullBlockEntities = Configurator.cullEntityRender;
 
 		for (int regionIndex = 0; regionIndex < visibleRegionCount; ++regionIndex) {
 			assert visibleRegions[regionIndex] != null;
 			assert visibleRegions[regionIndex].getRenderData() != null;
 
-			final List<BlockEntity> list = visibleRegions[regionIndex].getRenderData().getBlockEntities();
+			final BuiltRenderRegion region = visibleRegions[regionIndex];
+			final List<BlockEntity> list = region.getRenderData().getBlockEntities();
+			final int octants = cullBlockEntities ? region.occluderOctants : TerrainOccluder.ALL_OCTANTS;
 
 			final Iterator<BlockEntity> itBER = list.iterator();
 
 			while (itBER.hasNext()) {
 				final BlockEntity blockEntity = itBER.next();
 				final BlockPos blockPos = blockEntity.getPos();
+
+				if (octants != TerrainOccluder.ALL_OCTANTS && !isBlockEntityVisible(blockPos, octants)) {
+					continue;
+				}
+
 				VertexConsumerProvider outputConsumer = immediate;
 
 				matrixStack.push();
@@ -992,6 +1016,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		if (translucentSortPositionVersion != frustum.positionVersion()) {
 			translucentSortPositionVersion = frustum.positionVersion();
 
+			// regions whose quad order can't have changed return false and don't count against the budget
 			int j = 0;
 			for (int regionIndex = 0; regionIndex < visibleRegionCount; regionIndex++) {
 				if (j < 15 && visibleRegions[regionIndex].scheduleSort()) {
@@ -1050,10 +1075,16 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 		if (!regionsToRebuild.isEmpty()) {
 			final Iterator<BuiltRenderRegion> iterator = regionsToRebuild.iterator();
+			final long now = Util.getMeasuringTimeNano();
 
 			while (iterator.hasNext()) {
 				final BuiltRenderRegion builtRegion = iterator.next();
 
+				// region is still changing - leave in set so more changes merge into one capture
+				if (builtRegion.isRebuildDeferred(now)) {
+					continue;
+				}
+
 				if (builtRegion.needsImportantRebuild()) {
 					builtRegion.rebuildOnMainThread();
 				} else {
@@ -1102,7 +1133,28 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		((WorldRenderer) wr).updateNoCullingBlockEntities(removedBlockEntities, addedBlockEntities);
 	}
 
-	// PERF: stash frustum version and terrain version in entity - only retest when changed
+	/**
+	 * Renderers may draw a little past their block so neighbors are included.  Bounds that
+	 * reach into another region are treated as visible because only this region's octants are known.
+	 */
+	private static boolean isBlockEntityVisible(BlockPos pos, int octants) {
+		final int x = pos.getX();
+		final int y = pos.getY();
+		final int z = pos.getZ();
+
+		if (((x - 1) >> 4) != ((x + 1) >> 4) || ((y - 1) >> 4) != ((y + 1) >> 4) || ((z - 1) >> 4) != ((z + 1) >> 4)) {
+			return true;
+		}
+
+		return (octants & TerrainOccluder.octantMask(x - 1, y - 1, z - 1, x + 1, y + 1, z + 1)) != 0;
+	}
+
+	/**
+	 * Occlusion result is cached in the entity and only retested when terrain visibility
+	 * changes, the entity moves to a different block or its size in whole blocks changes.
+	 * Tested bounds extend one block past the entity so that movement within the same
+	 * block can't leave the cached result stale.
+	 */
 	public <T extends Entity> boolean isEntityVisible(T entity) {
 		final Box box = entity.getVisibilityBoundingBox();
 
@@ -1129,52 +1181,31 @@ public class CanvasWorldRenderer extends WorldRenderer {
 			return false;
 		}
 
-		final int rx0 = MathHelper.floor(x0) & 0xFFFFFFF0;
-		final int ry0 = MathHelper.floor(y0) & 0xFFFFFFF0;
-		final int rz0 = MathHelper.floor(z0) & 0xFFFFFFF0;
-		final int rx1 = MathHelper.floor(x1) & 0xFFFFFFF0;
-		final int ry1 = MathHelper.floor(y1) & 0xFFFFFFF0;
-		final int rz1 = MathHelper.floor(z1) & 0xFFFFFFF0;
-
-		int flags = rx0 == rz1 ? 0 : 1;
-		if (ry0 != ry1) flags |= 2;
-		if (rz0 != rz1) flags |= 4;
-
-		final RenderRegionStorage regions = renderRegionStorage;
+		final int sizeX = MathHelper.ceil(x1 - x0);
+		final int sizeY = MathHelper.ceil(y1 - y0);
+		final int sizeZ = MathHelper.ceil(z1 - z0);
 
-		switch (flags) {
-			case 0b000:
-				return regions.wasSeen(rx0, ry0, rz0);
-
-			case 0b001:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx1, ry0, rz0);
-
-			case 0b010:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx0, ry1, rz0);
-
-			case 0b011:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx1, ry0, rz0)
-				|| regions.wasSeen(rx0, ry1, rz0) || regions.wasSeen(rx1, ry1, rz0);
-
-			case 0b100:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx0, ry0, rz1);
-
-			case 0b101:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx1, ry0, rz0)
-				|| regions.wasSeen(rx0, ry0, rz1) || regions.wasSeen(rx1, ry0, rz1);
-
-			case 0b110:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx0, ry1, rz0)
-				|| regions.wasSeen(rx0, ry0, rz1) || regions.wasSeen(rx0, ry1, rz1);
+		// very large entities aren't worth testing at octant granularity
+		if (sizeX > MAX_OCTANT_TEST_BLOCKS || sizeY > MAX_OCTANT_TEST_BLOCKS || sizeZ > MAX_OCTANT_TEST_BLOCKS) {
+			return true;
+		}
 
-			case 0b111:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx1, ry0, rz0)
-				|| regions.wasSeen(rx0, ry1, rz0) || regions.wasSeen(rx1, ry1, rz0)
-				|| regions.wasSeen(rx0, ry0, rz1) || regions.wasSeen(rx1, ry0, rz1)
-				|| regions.wasSeen(rx0, ry1, rz1) || regions.wasSeen(rx1, ry1, rz1);
+		final int bx0 = MathHelper.floor(x0);
+		final int by0 = MathHelper.floor(y0);
+		final int bz0 = MathHelper.floor(z0);
+		final long pos = BlockPos.asLong(bx0, by0, bz0);
+		// pose changes such as swimming to standing can grow the box without moving its min corner
+		final int size = sizeX | (sizeY << 8) | (sizeZ << 16);
+		final EntityExt ext = (EntityExt) entity;
+		final int version = entityVisibilityVersion;
+
+		if (ext.canvas_visibilityVersion() == version && ext.canvas_visibilityPos() == pos && ext.canvas_visibilitySize() == size) {
+			return ext.canvas_isVisible();
 		}
 
-		return true;
+		final boolean result = renderRegionStorage.wasBoxSeen(bx0, by0, bz0, MathHelper.floor(x1) + 1, MathHelper.floor(y1) + 1, MathHelper.floor(z1) + 1);
+		ext.canvas_setVisibility(version, pos, size, result);
+		return result;
 	}
 
 	public void scheduleRegionRender(int x, int y, int z, boolean urgent) {
@@ -1182,6 +1213,23 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		forceVisibilityUpdate();
 	}
 
+	/**
+	 * Block-level variant of {@link #scheduleRegionRender(int, int, int, boolean)} that
+	 * lets regions re-tessellate only the area around the changed block.
+	 */
+	public void scheduleBlockRender(BlockPos pos, boolean urgent) {
+		regionStorage().scheduleBlockRebuild(pos.getX(), pos.getY(), pos.getZ(), urgent);
+		forceVisibilityUpdate();
+	}
+
+	/**
+	 * Block-level variant for all blocks in the given inclusive bounds.
+	 */
+	public void scheduleBlockRenders(int x0, int y0, int z0, int x1, int y1, int z1, boolean urgent) {
+		regionStorage().scheduleBoxRebuild(x0, y0, z0, x1, y1, z1, urgent);
+		forceVisibilityUpdate();
+	}
+
 	@Override
 	public void render(MatrixStack matrices, float tickDelta, long limitTime, boolean renderBlockOutline, Camera camera, GameRenderer gameRenderer, LightmapTextureManager lightmapTextureManager, Matrix4f matrix4f) {
 		wr.canvas_mc().getProfiler().swap("dynamic_lighting");
@@ -35,6 +35,7 @@ import net.minecraft.util.math.MathHelper;
 public class DrawHandlers {
 
 	private static final DrawHandler[] HANDLERS = new DrawHandler[MathHelper.smallestEncompassingPowerOfTwo(EncodingContext.values().length) * MathHelper.smallestEncompassingPowerOfTwo(ShaderPass.values().length)];
+	private static final DrawHandler[] COMPACT_HANDLERS = new DrawHandler[MathHelper.smallestEncompassingPowerOfTwo(EncodingContext.values().length) * MathHelper.smallestEncompassingPowerOfTwo(ShaderPass.values().length)];
 	private static final DrawHandler[] HD_HANDLERS = new DrawHandler[MathHelper.smallestEncompassingPowerOfTwo(EncodingContext.values().length) * MathHelper.smallestEncompassingPowerOfTwo(ShaderPass.values().length)];
 
 	static {
@@ -42,6 +43,11 @@ public class DrawHandlers {
 		HANDLERS[lookupIndex(EncodingContext.TERRAIN, ShaderPass.DECAL)] = new DecalHandler(MaterialVertexFormats.VANILLA_BLOCKS_AND_ITEMS, ShaderPass.DECAL);
 		HANDLERS[lookupIndex(EncodingContext.TERRAIN, ShaderPass.TRANSLUCENT)] = new TranslucentHandler(MaterialVertexFormats.VANILLA_BLOCKS_AND_ITEMS, ShaderPass.TRANSLUCENT);
 
+		// translucent keeps float positions for sorting
+		COMPACT_HANDLERS[lookupIndex(EncodingContext.TERRAIN, ShaderPass.SOLID)] = new SolidHandler(MaterialVertexFormats.COMPACT_TERRAIN, ShaderPass.SOLID);
+		COMPACT_HANDLERS[lookupIndex(EncodingContext.TERRAIN, ShaderPass.DECAL)] = new DecalHandler(MaterialVertexFormats.COMPACT_TERRAIN, ShaderPass.DECAL);
+		COMPACT_HANDLERS[lookupIndex(EncodingContext.TERRAIN, ShaderPass.TRANSLUCENT)] = HANDLERS[lookupIndex(EncodingContext.TERRAIN, ShaderPass.TRANSLUCENT)];
+
 		HD_HANDLERS[lookupIndex(EncodingContext.TERRAIN, ShaderPass.SOLID)] = new SolidHandler(MaterialVertexFormats.HD_TERRAIN, ShaderPass.SOLID);
 		HD_HANDLERS[lookupIndex(EncodingContext.TERRAIN, ShaderPass.DECAL)] = new DecalHandler(MaterialVertexFormats.HD_TERRAIN, ShaderPass.DECAL);
 		HD_HANDLERS[lookupIndex(EncodingContext.TERRAIN, ShaderPass.TRANSLUCENT)] = new TranslucentHandler(MaterialVertexFormats.HD_TERRAIN, ShaderPass.TRANSLUCENT);
@@ -54,9 +60,17 @@ public class DrawHandlers {
 	public static DrawHandler get(EncodingContext context, ShaderPass shaderPass) {
 		assert shaderPass != ShaderPass.PROCESS;
 
-		final boolean isHD = context == EncodingContext.TERRAIN && Configurator.hdLightmaps();
 		final int index = lookupIndex(context, shaderPass);
-		return isHD ? HD_HANDLERS[index] : HANDLERS[index];
+
+		if (context == EncodingContext.TERRAIN) {
+			if (Configurator.hdLightmaps()) {
+				return HD_HANDLERS[index];
+			} else if (MaterialVertexFormats.useCompactTerrain()) {
+				return COMPACT_HANDLERS[index];
+			}
+		}
+
+		return HANDLERS[index];
 	}
 
 	private static class SolidHandler extends DrawHandler {
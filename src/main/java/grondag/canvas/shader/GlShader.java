@@ -33,6 +33,8 @@ import grondag.canvas.Configurator;
 import grondag.canvas.Configurator.AoMode;
 import grondag.canvas.Configurator.DiffuseMode;
 import grondag.canvas.Configurator.FogMode;
+import grondag.canvas.material.EncodingContext;
+import grondag.canvas.material.MaterialVertexFormats;
 import grondag.canvas.texture.SpriteInfoTexture;
 import grondag.canvas.varia.CanvasGlHelper;
 import org.apache.commons.lang3.StringUtils;
@@ -228,6 +230,10 @@ class GlShader implements Shader {
 			result = StringUtils.replace(result, "#define _CV_SPRITE_INFO_TEXTURE_SIZE 1024", "#define _CV_SPRITE_INFO_TEXTURE_SIZE " + SpriteInfoTexture.BLOCKS.textureSize());
 			result = StringUtils.replace(result, "#define _CV_ATLAS_WIDTH 1024", "#define _CV_ATLAS_WIDTH " + SpriteInfoTexture.BLOCKS.atlasWidth());
 			result = StringUtils.replace(result, "#define _CV_ATLAS_HEIGHT 1024", "#define _CV_ATLAS_HEIGHT " + SpriteInfoTexture.BLOCKS.atlasHeight());
+
+			if (context.materialContext == EncodingContext.TERRAIN && context.pass != ShaderPass.TRANSLUCENT && MaterialVertexFormats.useCompactTerrain()) {
+				result = StringUtils.replace(result, "//#define _CV_COMPACT_VERTEX", "#define _CV_COMPACT_VERTEX");
+			}
 		}
 
 		if (context.pass != ShaderPass.SOLID) {
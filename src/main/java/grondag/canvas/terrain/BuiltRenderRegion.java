@@ -22,6 +22,8 @@ import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
 import grondag.canvas.apiimpl.util.FaceConstants;
 import grondag.canvas.buffer.encoding.VertexCollectorImpl;
 import grondag.canvas.buffer.encoding.VertexCollectorList;
+import grondag.canvas.light.LightmapHd;
+import grondag.canvas.light.LightmapHdRefs;
 import grondag.canvas.material.EncodingContext;
 import grondag.canvas.material.MaterialState;
 import grondag.canvas.perf.ChunkRebuildCounters;
@@ -51,8 +53,8 @@ import net.minecraft.client.render.block.BlockRenderManager;
 import net.minecraft.client.render.block.entity.BlockEntityRenderDispatcher;
 import net.minecraft.client.render.block.entity.BlockEntityRenderer;
 import net.minecraft.client.render.model.BakedModel;
-import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.fluid.FluidState;
+import net.minecraft.util.Util;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Vec3d;
@@ -65,6 +67,33 @@ import java.util.function.Consumer;
 
 @Environment(EnvType.CLIENT)
 public class BuiltRenderRegion {
+	/**
+	 * Dirty events closer together than this count as churn.
+	 */
+	private static final long CHURN_WINDOW_NANOS = 500_000_000L;
+
+	/**
+	 * Calls closer together than this while a rebuild is pending are one dirty event.
+	 * A single block change marks the same region dirty many times in a row.
+	 */
+	private static final long DIRTY_BURST_NANOS = 5_000_000L;
+
+	/**
+	 * Number of consecutive rapid dirty events before rebuilds are deferred.
+	 */
+	private static final int CHURN_THRESHOLD = 3;
+	private static final int MAX_CHURN = 8;
+
+	/**
+	 * Deferred rebuilds wait for this long without changes, per churn level.
+	 */
+	private static final long QUIET_NANOS_PER_CHURN = 25_000_000L;
+
+	/**
+	 * Deferred rebuilds never wait longer than this after first becoming dirty.
+	 */
+	private static final long MAX_DEFER_NANOS = 250_000_000L;
+
 	private static int frameIndex;
 	private final RenderRegionBuilder renderRegionBuilder;
 	private final RenderRegionStorage storage;
@@ -81,17 +110,39 @@ public class BuiltRenderRegion {
 	public int occlusionRange;
 	public int occluderVersion;
 	public boolean occluderResult;
+	// for coherent occlusion: consecutive visible raster tests, plus occluder state at the last test
+	public int occluderVisibleCount;
+	public int occluderTestVersion;
+	public long occluderTestViewX;
+	public long occluderTestViewY;
+	public long occluderTestViewZ;
+	// octants found visible when the region was last visible, see TerrainOccluder#visibleOctants
+	public int occluderOctants = TerrainOccluder.ALL_OCTANTS;
 	public float cameraRelativeCenterX;
 	public float cameraRelativeCenterY;
 	public float cameraRelativeCenterZ;
 	int squaredCameraDistance;
 	private boolean needsRebuild;
 	private boolean needsImportantRebuild;
+	private long lastDirtyNanos;
+	private long firstDirtyNanos;
+	private int churn;
+	// sub-cubes changed since last world capture - main thread only
+	private long dirtySubcubes = RegionMeshState.ALL_SUBCUBES;
+	// sequence of last world capture - main thread only
+	private int captureSequence;
+	// retained mesh of last build for near regions, null if not available
+	private volatile RegionMeshState meshState;
+	// HD lightmaps retained for meshState, owned by the pending or current drawables
+	private volatile LightmapHd[] meshLightmaps = LightmapHdRefs.EMPTY;
+	// HD lightmaps retained for current drawables - render thread only
+	private LightmapHd[] drawnLightmaps = LightmapHdRefs.EMPTY;
 	private volatile RegionBuildState buildState = new RegionBuildState();
 	private DrawableChunk translucentDrawable = DrawableChunk.EMPTY_DRAWABLE;
 	private DrawableChunk solidDrawable = DrawableChunk.EMPTY_DRAWABLE;
-	private int frustumVersion;
-	private boolean frustumResult;
+	// frustum view version in high bits, result in low bit - packed so a single volatile write
+	// publishes both when levels are filtered on pool threads
+	private volatile long frustumState;
 	private int lastSeenFrameIndex;
 	private boolean isClosed = false;
 	private boolean isInsideRenderDistance;
@@ -103,8 +154,8 @@ public class BuiltRenderRegion {
 		terrainOccluder = cwr.terrainOccluder;
 		renderRegionBuilder = cwr.regionBuilder();
 		storage = cwr.regionStorage();
+		// already retained by storage
 		chunkReference = chunkRef;
-		chunkReference.retain(this);
 		buildData = new AtomicReference<>(RegionData.EMPTY);
 		renderData = new AtomicReference<>(RegionData.EMPTY);
 		needsRebuild = true;
@@ -129,26 +180,23 @@ public class BuiltRenderRegion {
 		++frameIndex;
 	}
 
-	// PERF: make this lazy?
-
 	/**
 	 * Assumes camera distance update has already happened.
-	 * <p>
-	 * NB: tried a crude hierarchical scheme of checking chunk columns first
-	 * but didn't pay off.  Would probably  need to propagate per-plane results
-	 * over a more efficient region but that might not even help. Is already
-	 * quite fast and typically only one or a few regions per chunk must be tested.
+	 *
+	 * <p>Normally answered from the batch test in {@link RenderRegionStorage#updateFrustum(CanvasFrustum)},
+	 * which tests chunk columns first and only tests regions against planes their column crosses.
+	 * Regions not included in the batch are tested individually.
 	 */
 	public boolean isInFrustum(CanvasFrustum frustum) {
 		final int v = frustum.viewVersion();
+		final long state = frustumState;
 
-		if (v == frustumVersion) {
-			return frustumResult;
+		if ((int) (state >>> 32) == v) {
+			return (state & 1L) != 0;
 		} else {
-			frustumVersion = v;
-			//  PERF: implement hierarchical tests with propagation of per-plane inside test results
-			final boolean result = frustum.isRegionVisible(this);
-			frustumResult = result;
+			final int batchResult = storage.batchFrustumResult(chunkReference, origin.getY(), v);
+			final boolean result = batchResult == -1 ? frustum.isRegionVisible(this) : batchResult == 1;
+			frustumState = ((long) v << 32) | (result ? 1L : 0L);
 			return result;
 		}
 	}
@@ -157,6 +205,18 @@ public class BuiltRenderRegion {
 		return frameIndex - lastSeenFrameIndex < 4 && occluderResult;
 	}
 
+	public boolean wasOctantRecentlySeen(int octantBit) {
+		return wasRecentlySeen() && (occluderOctants & octantBit) != 0;
+	}
+
+	/**
+	 * True if the region has block entities or its chunk section has entities.
+	 * Only used to decide if per-octant occlusion tests are worth doing.
+	 */
+	public boolean mayHaveEntities() {
+		return !getBuildData().getBlockEntities().isEmpty() || chunkReference.hasEntities(origin.getY() >> 4);
+	}
+
 	/**
 	 * @return True if nearby.  If not nearby and not outside view distance true if neighbors are loaded.
 	 */
@@ -200,7 +260,7 @@ public class BuiltRenderRegion {
 
 		if (!isClosed) {
 			isClosed = true;
-			chunkReference.release(this);
+			chunkReference.release();
 
 			cancel();
 			buildData.set(RegionData.EMPTY);
@@ -215,12 +275,78 @@ public class BuiltRenderRegion {
 
 		translucentDrawable.close();
 		translucentDrawable = DrawableChunk.EMPTY_DRAWABLE;
+
+		LightmapHd.releaseAll(drawnLightmaps);
+		drawnLightmaps = LightmapHdRefs.EMPTY;
+	}
+
+	/**
+	 * Takes lightmaps retained by the build just completed in the given context.
+	 * They are released when the drawables built with them are replaced or closed.
+	 */
+	private LightmapHd[] takeLightmaps(TerrainRenderContext context) {
+		final LightmapHd[] result = context.hdLightmaps.take();
+		meshLightmaps = result;
+		return result;
 	}
 
 	public BlockPos getOrigin() {
 		return origin;
 	}
 
+	/**
+	 * Called when world content of the region changes. Tracks how often the region
+	 * is invalidated so that busy regions can have their rebuilds coalesced.
+	 * Changes that arrive while a rebuild is already pending merge into that rebuild.
+	 */
+	public void markDirty(boolean isImportant) {
+		markDirty(isImportant, RegionMeshState.ALL_SUBCUBES);
+	}
+
+	/**
+	 * Like {@link #markDirty(boolean)} but only the given 4x4x4 sub-cubes need to
+	 * be re-tessellated if mesh data from the prior build has been retained.
+	 */
+	public void markDirty(boolean isImportant, long subcubes) {
+		dirtySubcubes |= subcubes;
+
+		final long now = Util.getMeasuringTimeNano();
+		final long elapsed = now - lastDirtyNanos;
+
+		if (!needsRebuild || elapsed >= DIRTY_BURST_NANOS) {
+			if (elapsed < CHURN_WINDOW_NANOS) {
+				if (churn < MAX_CHURN) {
+					++churn;
+				}
+			} else {
+				churn = 0;
+			}
+
+			lastDirtyNanos = now;
+
+			if (needsRebuild) {
+				renderRegionBuilder.countMergedRebuild();
+			} else {
+				firstDirtyNanos = now;
+			}
+		}
+
+		markForBuild(isImportant);
+	}
+
+	/**
+	 * True if region keeps changing and should wait before capturing world state
+	 * so that further changes can be merged into the same rebuild. Important
+	 * rebuilds are never deferred, and deferral is bounded by {@link #MAX_DEFER_NANOS}.
+	 */
+	public boolean isRebuildDeferred(long now) {
+		if (!Configurator.coalesceRebuilds || churn < CHURN_THRESHOLD || needsImportantRebuild()) {
+			return false;
+		}
+
+		return now - lastDirtyNanos < QUIET_NANOS_PER_CHURN * churn && now - firstDirtyNanos < MAX_DEFER_NANOS;
+	}
+
 	public void markForBuild(boolean isImportant) {
 		final boolean neededRebuild = needsRebuild;
 		needsRebuild = true;
@@ -241,30 +367,88 @@ public class BuiltRenderRegion {
 	}
 
 	public void scheduleRebuild() {
-		final ProtoRenderRegion region = ProtoRenderRegion.claim(cwr.getWorld(), origin);
+		final ProtoRenderRegion region = claimProtoRegion();
+		final AtomicReference<ProtoRenderRegion> protoRegion = buildState.protoRegion;
+		ProtoRenderRegion prior;
+
+		if (region == ProtoRenderRegion.EMPTY) {
+			prior = protoRegion.getAndSet(region);
+		} else {
+			final int baseSequence = region.baseSequence;
+			final long dirtySubcubes = region.dirtySubcubes;
+
+			do {
+				prior = protoRegion.get();
+
+				// A capture that was never built is replaced, so this build must also cover its changes.
+				if (prior == ProtoRenderRegion.EMPTY) {
+					region.dirtySubcubes = RegionMeshState.ALL_SUBCUBES;
+				} else if (prior.buildSequence != 0) {
+					region.baseSequence = prior.baseSequence;
+					region.dirtySubcubes = dirtySubcubes | prior.dirtySubcubes;
+				} else {
+					region.baseSequence = baseSequence;
+					region.dirtySubcubes = dirtySubcubes;
+				}
+			} while (!protoRegion.compareAndSet(prior, region));
+		}
 
 		// null region is signal to reschedule
-		if (buildState.protoRegion.getAndSet(region) == ProtoRenderRegion.IDLE) {
-			renderRegionBuilder.executor.execute(buildTask, squaredCameraDistance);
+		if (prior == ProtoRenderRegion.IDLE) {
+			renderRegionBuilder.executor.execute(buildTask, this);
 		}
 	}
 
+	/**
+	 * Captures world state and the sub-cubes that changed since the prior capture.
+	 */
+	private ProtoRenderRegion claimProtoRegion() {
+		final ProtoRenderRegion region = ProtoRenderRegion.claim(cwr.getWorld(), origin);
+		final int sequence = ++captureSequence;
+		final long dirty = dirtySubcubes;
+		dirtySubcubes = 0;
+
+		if (region != ProtoRenderRegion.EMPTY) {
+			region.buildSequence = sequence;
+			region.baseSequence = sequence - 1;
+			region.dirtySubcubes = dirty;
+		}
+
+		return region;
+	}
+
 	public boolean scheduleSort() {
 		final RegionData regionData = buildData.get();
 
 		if (regionData.translucentState == null) {
 			return false;
 		} else {
+			final Vec3d cameraPos = cwr.cameraPos();
+
+			if (!regionData.needsResort(
+					(float) (cameraPos.x - sortOrigin(origin.getX())),
+					(float) (cameraPos.y - sortOrigin(origin.getY())),
+					(float) (cameraPos.z - sortOrigin(origin.getZ())))) {
+				return false;
+			}
+
 			if (buildState.protoRegion.compareAndSet(ProtoRenderRegion.IDLE, ProtoRenderRegion.RESORT_ONLY)) {
 				// null means need to reschedule, otherwise was already scheduled for either
 				// resort or rebuild, or is invalid, not ready to be built.
-				renderRegionBuilder.executor.execute(buildTask, squaredCameraDistance);
+				renderRegionBuilder.executor.execute(buildTask, this);
 			}
 
 			return true;
 		}
 	}
 
+	/**
+	 * Origin of the coordinate space used for translucent sorting.
+	 */
+	private static int sortOrigin(int blockCoord) {
+		return Configurator.batchedChunkRender ? TerrainModelSpace.renderCubeOrigin(blockCoord) : blockCoord;
+	}
+
 	protected void cancel() {
 		buildState.protoRegion.set(ProtoRenderRegion.INVALID);
 		buildState = new RegionBuildState();
@@ -279,6 +463,8 @@ public class BuiltRenderRegion {
 		}
 
 		if (region == ProtoRenderRegion.EMPTY) {
+			meshState = null;
+			meshLightmaps = LightmapHdRefs.EMPTY;
 			final RegionData chunkData = new RegionData();
 			chunkData.complete(OcclusionRegion.EMPTY_CULL_DATA);
 
@@ -315,22 +501,24 @@ public class BuiltRenderRegion {
 
 				collector.loadState(translucentState, state);
 
-				if (Configurator.batchedChunkRender) {
-					collector.sortQuads(
-							(float) cameraPos.x - TerrainModelSpace.renderCubeOrigin(origin.getX()),
-							(float) cameraPos.y - TerrainModelSpace.renderCubeOrigin(origin.getY()),
-							(float) cameraPos.z - TerrainModelSpace.renderCubeOrigin(origin.getZ()));
-				} else {
-					collector.sortQuads((float) cameraPos.x - origin.getX(), (float) cameraPos.y - origin.getY(), (float) cameraPos.z - origin.getZ());
-				}
+				final float x = (float) (cameraPos.x - sortOrigin(origin.getX()));
+				final float y = (float) (cameraPos.y - sortOrigin(origin.getY()));
+				final float z = (float) (cameraPos.z - sortOrigin(origin.getZ()));
 
+				collector.sortQuads(x, y, z);
 				regionData.translucentState = collector.saveState(state);
+				regionData.updateSortCell(x, y, z);
 
 				if (runningState.protoRegion.get() != ProtoRenderRegion.INVALID) {
 					final UploadableChunk upload = collectors.toUploadableChunk(EncodingContext.TERRAIN, true);
 
 					if (upload != UploadableChunk.EMPTY_UPLOADABLE) {
 						renderRegionBuilder.scheduleUpload(() -> {
+							if (isClosed) {
+								upload.close();
+								return;
+							}
+
 							if (ChunkRebuildCounters.ENABLED) {
 								ChunkRebuildCounters.startUpload();
 							}
@@ -367,14 +555,23 @@ public class BuiltRenderRegion {
 				return;
 			}
 
-			buildTerrain(context, chunkData);
+			buildTerrain(context, chunkData, region, null);
 
 			if (runningState.protoRegion.get() != ProtoRenderRegion.INVALID) {
 				final UploadableChunk solidUpload = collectors.toUploadableChunk(EncodingContext.TERRAIN, false);
 				final UploadableChunk translucentUpload = collectors.toUploadableChunk(EncodingContext.TERRAIN, true);
+				final LightmapHd[] lightmaps = takeLightmaps(context);
 
 				if (solidUpload != UploadableChunk.EMPTY_UPLOADABLE || translucentUpload != UploadableChunk.EMPTY_UPLOADABLE) {
 					renderRegionBuilder.scheduleUpload(() -> {
+						// closed regions are never drawn or closed again, so nothing else would release these
+						if (isClosed) {
+							solidUpload.close();
+							translucentUpload.close();
+							LightmapHd.releaseAll(lightmaps);
+							return;
+						}
+
 						if (ChunkRebuildCounters.ENABLED) {
 							ChunkRebuildCounters.startUpload();
 						}
@@ -382,13 +579,22 @@ public class BuiltRenderRegion {
 						releaseDrawables();
 						solidDrawable = solidUpload.produceDrawable();
 						translucentDrawable = translucentUpload.produceDrawable();
+						drawnLightmaps = lightmaps;
 						renderData.set(chunkData);
 
 						if (ChunkRebuildCounters.ENABLED) {
 							ChunkRebuildCounters.completeUpload();
 						}
 					});
+				} else {
+					// empty mesh can't reference any lightmaps
+					LightmapHd.releaseAll(lightmaps);
+					meshLightmaps = LightmapHdRefs.EMPTY;
 				}
+			} else {
+				// lightmaps stay with the context and are released on its next build,
+				// so the mesh can't be reused
+				meshState = null;
 			}
 
 			collectors.clear();
@@ -404,14 +610,21 @@ public class BuiltRenderRegion {
 		return regionData;
 	}
 
-	private void buildTerrain(TerrainRenderContext context, RegionData regionData) {
+	/**
+	 * Tessellates the region in 4x4x4 sub-cubes.  When the mesh of the build that
+	 * preceded this capture is available, sub-cubes that did not change are copied
+	 * from it instead of being tessellated again.
+	 *
+	 * @param subvolumes if non-null, all but the first sub-volume are tessellated on pool
+	 * threads with these and appended in order, see {@link RegionSubvolume}
+	 */
+	private void buildTerrain(TerrainRenderContext context, RegionData regionData, ProtoRenderRegion protoRegion, RegionSubvolume[] subvolumes) {
 		if (ChunkRebuildCounters.ENABLED) {
 			ChunkRebuildCounters.startChunk();
 		}
 
 		final VertexCollectorList collectors = context.collectors;
 
-		final BlockPos.Mutable searchPos = context.searchPos;
 		final int xOrigin = origin.getX();
 		final int yOrigin = origin.getY();
 		final int zOrigin = origin.getZ();
@@ -428,13 +641,76 @@ public class BuiltRenderRegion {
 			zModelOffset = 0;
 		}
 
-		final FastRenderRegion region = context.region;
 		final Vec3d cameraPos = cwr.cameraPos();
-		final MatrixStack matrixStack = new MatrixStack();
-		final BlockRenderManager blockRenderManager = MinecraftClient.getInstance().getBlockRenderManager();
+		final OcclusionRegion occlusionRegion = context.region.occlusion;
+
+		final boolean retainMesh = Configurator.incrementalRebuilds && isNear();
+		final RegionMeshState.Builder meshBuilder = retainMesh ? RegionMeshState.builder() : null;
+		final RegionMeshState priorMesh = meshState;
+		long reuseSubcubes = 0;
+
+		if (retainMesh && priorMesh != null && priorMesh.buildSequence == protoRegion.baseSequence) {
+			reuseSubcubes = ~(protoRegion.dirtySubcubes | priorMesh.changedSubcubes(occlusionRegion));
+
+			// reused quads still reference lightmaps of the prior build and can't be kept if any were evicted
+			if (reuseSubcubes != 0 && !context.hdLightmaps.retainAll(meshLightmaps)) {
+				reuseSubcubes = 0;
+			}
+		}
+
+		if (subvolumes != null) {
+			for (int n = 1; n < RegionSubvolume.COUNT; ++n) {
+				subvolumes[n - 1].start(this, context, n, reuseSubcubes, xModelOffset, yModelOffset, zModelOffset);
+			}
+		}
+
+		try {
+			for (int subcube = 0; subcube < RegionMeshState.SUBCUBE_COUNT; ++subcube) {
+				if ((reuseSubcubes & (1L << subcube)) != 0) {
+					priorMesh.appendSubcube(subcube, collectors);
+				} else if (subvolumes == null || subcube < RegionSubvolume.SUBCUBES) {
+					tesselateSubcube(context, subcube, xModelOffset, yModelOffset, zModelOffset);
+				} else {
+					subvolumes[RegionSubvolume.indexOf(subcube) - 1].join().appendSubcube(subcube, collectors);
+				}
+
+				if (meshBuilder != null) {
+					meshBuilder.endSubcube(subcube, collectors);
+				}
+			}
+		} finally {
+			if (subvolumes != null) {
+				for (final RegionSubvolume subvolume : subvolumes) {
+					subvolume.finish(context);
+				}
+			}
+		}
+
+		// must be captured before translucent quads are sorted
+		meshState = meshBuilder == null ? null : meshBuilder.build(protoRegion.buildSequence, collectors, occlusionRegion);
+
+		regionData.endBuffering((float) (cameraPos.x - xOrigin + xModelOffset), (float) (cameraPos.y - yOrigin + yModelOffset), (float) (cameraPos.z - zOrigin + zModelOffset), collectors);
+
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.completeChunk();
+		}
+	}
+
+	/**
+	 * Tessellates renderable positions of one sub-cube into the context's collectors.
+	 */
+	void tesselateSubcube(TerrainRenderContext context, int subcube, int xModelOffset, int yModelOffset, int zModelOffset) {
+		final FastRenderRegion region = context.region;
 		final OcclusionRegion occlusionRegion = region.occlusion;
+		final BlockPos.Mutable searchPos = context.searchPos;
+		final BlockRenderManager blockRenderManager = MinecraftClient.getInstance().getBlockRenderManager();
+		final int xOrigin = origin.getX();
+		final int yOrigin = origin.getY();
+		final int zOrigin = origin.getZ();
+
+		for (int n = 0; n < RegionMeshState.SUBCUBE_COUNT; ++n) {
+			final int i = RegionMeshState.interiorIndex(subcube, n);
 
-		for (int i = 0; i < RenderRegionAddressHelper.INTERIOR_CACHE_SIZE; i++) {
 			if (occlusionRegion.shouldRender(i)) {
 				final BlockState blockState = region.getLocalBlockState(i);
 				final FluidState fluidState = blockState.getFluidState();
@@ -447,37 +723,29 @@ public class BuiltRenderRegion {
 				final boolean hasBlock = blockState.getRenderType() != BlockRenderType.INVISIBLE;
 
 				if (hasFluid || hasBlock) {
-					// PERF: allocation, speed
-					matrixStack.push();
-					matrixStack.translate(x + xModelOffset, y + yModelOffset, z + zModelOffset);
+					final float xOffset = x + xModelOffset;
+					final float yOffset = y + yModelOffset;
+					final float zOffset = z + zModelOffset;
 
 					if (hasFluid) {
-						context.tesselateFluid(blockState, searchPos, false, FluidQuadSupplier.get(fluidState.getFluid()), matrixStack);
+						context.setBlockOffset(xOffset, yOffset, zOffset);
+						context.tesselateFluid(blockState, searchPos, false, FluidQuadSupplier.get(fluidState.getFluid()));
 					}
 
 					if (hasBlock) {
 						if (blockState.getBlock().getOffsetType() != Block.OffsetType.NONE) {
 							final Vec3d vec3d = blockState.getModelOffset(region, searchPos);
-
-							if (vec3d != Vec3d.ZERO) {
-								matrixStack.translate(vec3d.x, vec3d.y, vec3d.z);
-							}
+							context.setBlockOffset(xOffset + (float) vec3d.x, yOffset + (float) vec3d.y, zOffset + (float) vec3d.z);
+						} else {
+							context.setBlockOffset(xOffset, yOffset, zOffset);
 						}
 
 						final BakedModel model = blockRenderManager.getModel(blockState);
-						context.tesselateBlock(blockState, searchPos, model.useAmbientOcclusion(), (FabricBakedModel) model, matrixStack);
+						context.tesselateBlock(blockState, searchPos, model.useAmbientOcclusion(), (FabricBakedModel) model);
 					}
-
-					matrixStack.pop();
 				}
 			}
 		}
-
-		regionData.endBuffering((float) (cameraPos.x - xOrigin + xModelOffset), (float) (cameraPos.y - yOrigin + yModelOffset), (float) (cameraPos.z - zOrigin + zModelOffset), collectors);
-
-		if (ChunkRebuildCounters.ENABLED) {
-			ChunkRebuildCounters.completeChunk();
-		}
 	}
 
 	private void handleBlockEntities(RegionData regionData, TerrainRenderContext context) {
@@ -523,9 +791,11 @@ public class BuiltRenderRegion {
 	}
 
 	public void rebuildOnMainThread() {
-		final ProtoRenderRegion region = ProtoRenderRegion.claim(cwr.getWorld(), origin);
+		final ProtoRenderRegion region = claimProtoRegion();
 
 		if (region == ProtoRenderRegion.EMPTY) {
+			meshState = null;
+			meshLightmaps = LightmapHdRefs.EMPTY;
 			final RegionData regionData = new RegionData();
 			regionData.complete(OcclusionRegion.EMPTY_CULL_DATA);
 			final int[] oldData = buildData.getAndSet(regionData).occlusionData;
@@ -552,7 +822,10 @@ public class BuiltRenderRegion {
 
 		cwr.forceVisibilityUpdate();
 
-		buildTerrain(context, regionData);
+		final RegionSubvolume[] subvolumes = Configurator.parallelMainThreadRebuilds && RegionSubvolume.isEnabled()
+				? renderRegionBuilder.mainThreadSubvolumes : null;
+
+		buildTerrain(context, regionData, region, subvolumes);
 
 		if (ChunkRebuildCounters.ENABLED) {
 			ChunkRebuildCounters.startUpload();
@@ -561,10 +834,12 @@ public class BuiltRenderRegion {
 		final VertexCollectorList collectors = context.collectors;
 		final UploadableChunk solidUpload = collectors.toUploadableChunk(EncodingContext.TERRAIN, false);
 		final UploadableChunk translucentUpload = collectors.toUploadableChunk(EncodingContext.TERRAIN, true);
+		final LightmapHd[] lightmaps = takeLightmaps(context);
 
 		releaseDrawables();
 		solidDrawable = solidUpload.produceDrawable();
 		translucentDrawable = translucentUpload.produceDrawable();
+		drawnLightmaps = lightmaps;
 
 		if (ChunkRebuildCounters.ENABLED) {
 			ChunkRebuildCounters.completeUpload();
@@ -34,15 +34,29 @@ import net.minecraft.world.level.ColorResolver;
 import java.util.function.Function;
 
 //TODO: per-vertex blending (quality)
+/**
+ * Per-chunk cache of base and blended biome colors, shared by all build workers.
+ *
+ * <p>Colors are computed a whole 16x16 slab at a time and published through volatile
+ * fields, so readers never lock and never see a partially written slab. Slow paths are
+ * synchronized so each slab is computed once. Lock order is blended, then base, then
+ * biomes, and base/biome computation never waits on another chunk, so neighbors
+ * blending each other cannot deadlock.
+ *
+ * <p>{@link #invalidate()} marks color slabs stale. They are recomputed on next use,
+ * while biome lookups, which don't depend on resources, are kept.
+ */
 @Environment(value = EnvType.CLIENT)
 public class ChunkColorCache implements BiomeAccess.Storage {
 	private static final MinecraftClient mc = MinecraftClient.getInstance();
-	private static int VERSION = 0;
+	private static final ThreadLocal<BlendBuffers> BLEND_BUFFERS = ThreadLocal.withInitial(BlendBuffers::new);
+	private static volatile int VERSION = 0;
 	private final WorldChunk chunk;
 	private final ClientWorld world;
 	private final int chunkX;
 	private final int chunkZ;
-	private final int version;
+	/** Per-column biome, shared by all resolvers. Null until first color lookup. */
+	private volatile Biome[] columnBiomes;
 	private final BiomeColorCache grassCache = new BiomeColorCache(BiomeColors.GRASS_COLOR, c -> c.grassCache);
 	private final BiomeColorCache foliageCache = new BiomeColorCache(BiomeColors.FOLIAGE_COLOR, c -> c.foliageCache);
 	private final BiomeColorCache waterCache = new BiomeColorCache(BiomeColors.WATER_COLOR, c -> c.waterCache);
@@ -50,7 +64,6 @@ public class ChunkColorCache implements BiomeAccess.Storage {
 	public ChunkColorCache(ClientWorld world, WorldChunk chunk) {
 		this.world = world;
 		this.chunk = chunk;
-		version = VERSION;
 		final ChunkPos pos = chunk.getPos();
 		chunkX = pos.x;
 		chunkZ = pos.z;
@@ -64,14 +77,34 @@ public class ChunkColorCache implements BiomeAccess.Storage {
 		VERSION++;
 	}
 
-	public boolean isInvalid() {
-		return version < VERSION;
-	}
-
 	private Biome getBiome(int x, int y, int z) {
 		return ((BiomeAccessExt) world.getBiomeAccess()).getBiome(x, y, z, this);
 	}
 
+	private Biome[] columnBiomes(int y) {
+		Biome[] result = columnBiomes;
+
+		if (result == null) {
+			synchronized (this) {
+				result = columnBiomes;
+
+				if (result == null) {
+					result = new Biome[256];
+					final int x0 = chunkX << 4;
+					final int z0 = chunkZ << 4;
+
+					for (int i = 0; i < 256; ++i) {
+						result[i] = getBiome(x0 + (i & 0xF), y, z0 + (i >> 4));
+					}
+
+					columnBiomes = result;
+				}
+			}
+		}
+
+		return result;
+	}
+
 	private WorldChunk getChunk(int cx, int cz) {
 		if (cx == chunkX && cz == chunkZ) {
 			return chunk;
@@ -107,101 +140,196 @@ public class ChunkColorCache implements BiomeAccess.Storage {
 		}
 	}
 
+	/**
+	 * Immutable 16x16 colors, indexed x | z << 4.
+	 */
+	private static class ColorSlab {
+		final int version;
+		final int radius;
+		final int[] colors;
+
+		ColorSlab(int version, int radius, int[] colors) {
+			this.version = version;
+			this.radius = radius;
+			this.colors = colors;
+		}
+	}
+
 	private class BiomeColorCache {
-		private static final int BASE_INDEX = 0;
-		private static final int BASE_CONTROL = BASE_INDEX + 256;
-		private static final int BLENDED_INDEX = BASE_CONTROL + 8;
-		private static final int BLENDED_CONTROL = BLENDED_INDEX + 256;
 		private final ColorResolver colorResolver;
 		private final Function<ChunkColorCache, BiomeColorCache> cacheFunc;
-		private final int[] data = new int[512 + 16];
+		private final Object baseLock = new Object();
+		private final Object blendLock = new Object();
+		private volatile ColorSlab base;
+		private volatile ColorSlab blended;
 
 		private BiomeColorCache(ColorResolver colorResolver, Function<ChunkColorCache, BiomeColorCache> cacheFunc) {
 			this.colorResolver = colorResolver;
 			this.cacheFunc = cacheFunc;
 		}
 
-		private int getBaseColor(int x, int y, int z) {
-			final int cx = x >> 4;
-			final int cz = z >> 4;
-
-			if (cx == chunkX && cz == chunkZ) {
-				return getLocalBaseColor(x, y, z);
-			} else {
-				return cacheFunc.apply(get(world.getChunk(cx, cz))).getLocalBaseColor(x, y, z);
-			}
+		private BiomeColorCache cacheFor(int cx, int cz) {
+			return cx == chunkX && cz == chunkZ ? this : cacheFunc.apply(get(world.getChunk(cx, cz)));
 		}
 
-		private int getLocalBaseColor(int x, int y, int z) {
-			final int index = (x & 0xF) | ((z & 0xF) << 4);
-			final int controlIndex = BASE_CONTROL + (index >> 5);
-			final int controlMask = 1 << (index & 31);
-
-			if ((data[controlIndex] & controlMask) == 0) {
-				final int result = computeLocalBaseColor(x, y, z);
-				data[controlIndex] |= controlMask;
-				data[index] = result;
-				return result;
-			} else {
-				return data[index];
+		private int[] baseColors(int y) {
+			final int version = VERSION;
+			ColorSlab result = base;
+
+			if (result == null || result.version != version) {
+				synchronized (baseLock) {
+					result = base;
+
+					if (result == null || result.version != version) {
+						final Biome[] biomes = columnBiomes(y);
+						final int[] colors = new int[256];
+						final int x0 = chunkX << 4;
+						final int z0 = chunkZ << 4;
+
+						for (int i = 0; i < 256; ++i) {
+							colors[i] = colorResolver.getColor(biomes[i], x0 + (i & 0xF), z0 + (i >> 4));
+						}
+
+						result = new ColorSlab(version, 0, colors);
+						base = result;
+					}
+				}
 			}
-		}
 
-		private int computeLocalBaseColor(int x, int y, int z) {
-			return colorResolver.getColor(getBiome(x, y, z), x, z);
+			return result.colors;
 		}
 
-		private int getColor(int x, int y, int z) {
-			final int cx = x >> 4;
+		/**
+		 * Fills {@code out} with base colors for a row of {@code width} blocks starting at x0.
+		 * Looks up each neighbor chunk once per row instead of once per block.
+		 */
+		private void getBaseColorRow(int[] out, int x0, int y, int z, int width) {
 			final int cz = z >> 4;
+			final int zOffset = (z & 0xF) << 4;
+			int i = 0;
+
+			while (i < width) {
+				final int cx = (x0 + i) >> 4;
+				final int[] colors = cacheFor(cx, cz).baseColors(y);
+				final int limit = Math.min(width, ((cx + 1) << 4) - x0);
 
-			if (cx == chunkX && cz == chunkZ) {
-				return getLocalBlendedColor(x, y, z);
-			} else {
-				return cacheFunc.apply(get(world.getChunk(cx, cz))).getLocalBlendedColor(x, y, z);
+				for (; i < limit; ++i) {
+					out[i] = colors[((x0 + i) & 0xF) | zOffset];
+				}
 			}
 		}
 
-		private int getLocalBlendedColor(int x, int y, int z) {
-			final int index = (x & 0xF) | ((z & 0xF) << 4);
-			final int controlIndex = BLENDED_CONTROL + (index >> 5);
-			final int controlMask = 1 << (index & 31);
-
-			if ((data[controlIndex] & controlMask) == 0) {
-				final int result = computeLocalBlendedColor(x, y, z);
-				data[controlIndex] |= controlMask;
-				data[index + BLENDED_INDEX] = result;
-				return result;
-			} else {
-				return data[index + BLENDED_INDEX];
-			}
+		private int getColor(int x, int y, int z) {
+			return cacheFor(x >> 4, z >> 4).blendedColors(y)[(x & 0xF) | ((z & 0xF) << 4)];
 		}
 
-		private int computeLocalBlendedColor(int xIn, int yIn, int zIn) {
+		private int[] blendedColors(int y) {
+			final int version = VERSION;
 			final int radius = mc.options.biomeBlendRadius;
 
 			if (radius == 0) {
-				return getLocalBaseColor(xIn, yIn, zIn);
-			} else {
-				final int sampleCount = (radius * 2 + 1) * (radius * 2 + 1);
-				int r = 0;
-				int g = 0;
-				int b = 0;
-
-				final int xMax = xIn + radius;
-				final int zMax = zIn + radius;
-
-				for (int x = xIn - radius; x <= xMax; x++) {
-					for (int z = zIn - radius; z <= zMax; z++) {
-						final int color = getBaseColor(x, yIn, z);
-						g += (color >> 8) & 255;
-						r += (color >> 16) & 255;
-						b += color & 255;
+				return baseColors(y);
+			}
+
+			ColorSlab result = blended;
+
+			if (result == null || result.version != version || result.radius != radius) {
+				synchronized (blendLock) {
+					result = blended;
+
+					if (result == null || result.version != version || result.radius != radius) {
+						result = new ColorSlab(version, radius, computeBlendedColors(y, radius));
+						blended = result;
 					}
 				}
+			}
+
+			return result.colors;
+		}
+
+		/**
+		 * Blends all 256 columns of the chunk at once with a separable box filter:
+		 * running sums along x for each row of the window, then running sums of
+		 * those along z. Each base color is read once instead of once per overlapping
+		 * column. Channel sums are packed into one long, 21 bits per channel.
+		 */
+		private int[] computeBlendedColors(int y, int radius) {
+			final int diameter = radius * 2 + 1;
+			final int width = 16 + radius * 2;
+			final int sampleCount = diameter * diameter;
+			final int x0 = (chunkX << 4) - radius;
+			final int z0 = (chunkZ << 4) - radius;
+			final BlendBuffers buffers = BLEND_BUFFERS.get();
+			final int[] row = buffers.row(width);
+			final long[] rowSums = buffers.rowSums(width * 16);
+
+			for (int dz = 0; dz < width; ++dz) {
+				getBaseColorRow(row, x0, y, z0 + dz, width);
+				final int base = dz << 4;
+				long sum = 0;
+
+				for (int dx = 0; dx < diameter; ++dx) {
+					sum += expand(row[dx]);
+				}
+
+				rowSums[base] = sum;
 
-				return (r / sampleCount & 255) << 16 | (g / sampleCount & 255) << 8 | b / sampleCount & 255;
+				for (int x = 1; x < 16; ++x) {
+					sum += expand(row[x + diameter - 1]) - expand(row[x - 1]);
+					rowSums[base + x] = sum;
+				}
 			}
+
+			final int[] result = new int[256];
+
+			for (int x = 0; x < 16; ++x) {
+				long sum = 0;
+
+				for (int dz = 0; dz < diameter; ++dz) {
+					sum += rowSums[(dz << 4) + x];
+				}
+
+				result[x] = average(sum, sampleCount);
+
+				for (int z = 1; z < 16; ++z) {
+					sum += rowSums[((z + diameter - 1) << 4) + x] - rowSums[((z - 1) << 4) + x];
+					result[x | (z << 4)] = average(sum, sampleCount);
+				}
+			}
+
+			return result;
+		}
+	}
+
+	private static long expand(int color) {
+		return ((long) ((color >> 16) & 0xFF) << 42) | ((long) ((color >> 8) & 0xFF) << 21) | (color & 0xFF);
+	}
+
+	private static int average(long sum, int sampleCount) {
+		final int r = (int) ((sum >>> 42) & 0x1FFFFF) / sampleCount;
+		final int g = (int) ((sum >>> 21) & 0x1FFFFF) / sampleCount;
+		final int b = (int) (sum & 0x1FFFFF) / sampleCount;
+		return (r & 255) << 16 | (g & 255) << 8 | b & 255;
+	}
+
+	private static class BlendBuffers {
+		private int[] row = new int[32];
+		private long[] rowSums = new long[512];
+
+		int[] row(int size) {
+			if (row.length < size) {
+				row = new int[size];
+			}
+
+			return row;
+		}
+
+		long[] rowSums(int size) {
+			if (rowSums.length < size) {
+				rowSums = new long[size];
+			}
+
+			return rowSums;
 		}
 	}
 }
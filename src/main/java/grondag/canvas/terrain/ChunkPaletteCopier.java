@@ -25,6 +25,7 @@ import net.minecraft.world.chunk.ChunkSection;
 import net.minecraft.world.chunk.Palette;
 import net.minecraft.world.chunk.WorldChunk;
 import org.apache.commons.lang3.ObjectUtils;
+import org.jetbrains.annotations.Nullable;
 
 public class ChunkPaletteCopier {
 
@@ -55,6 +56,48 @@ public class ChunkPaletteCopier {
 		return ((PalettedContainerExt) sec.getContainer()).canvas_paletteCopy();
 	}
 
+	/**
+	 * Like {@link #captureCopy(WorldChunk, int)} but only copies packed storage.
+	 * Unpacking happens when the result is read, normally on a worker thread.
+	 */
+	public static PaletteCopy captureSnapshot(WorldChunk chunk, int sectionIndex) {
+		if (chunk == null || sectionIndex < 0) {
+			return AIR_COPY;
+		}
+
+		final ChunkSection[] sections = chunk.getSectionArray();
+
+		if (sections == null || sectionIndex >= sections.length) {
+			return AIR_COPY;
+		}
+
+		return captureSnapshot(sections[sectionIndex]);
+	}
+
+	public static PaletteCopy captureSnapshot(@Nullable ChunkSection sec) {
+		if (sec == null) {
+			return AIR_COPY;
+		}
+
+		if (sec.isEmpty()) {
+			final BlockState filler = sec.getBlockState(0, 0, 0);
+			return filler == AIR ? AIR_COPY : i -> filler;
+		}
+
+		return ((PalettedContainerExt) sec.getContainer()).canvas_paletteSnapshot();
+	}
+
+	/**
+	 * Callback from canvas_paletteSnapshot()
+	 */
+	public static PaletteCopy captureSnapshot(Palette<BlockState> palette, PackedIntegerArray data, BlockState emptyVal) {
+		if (palette == null || data == null) {
+			return emptyVal == null ? AIR_COPY : i -> emptyVal;
+		}
+
+		return PackedSectionSnapshot.claim(palette, data, emptyVal);
+	}
+
 	/**
 	 * Callback from canvas_paletteCopy()
 	 */
@@ -16,49 +16,69 @@
 
 package grondag.canvas.terrain;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
 import com.google.common.collect.ImmutableList;
 import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
 import grondag.fermion.sc.Sc;
-import net.minecraft.client.MinecraftClient;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Comparator;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.function.Consumer;
+import net.minecraft.client.MinecraftClient;
 
 /**
- * Simple executor service with ability to submit privileged tasks
+ * Executor service with ability to submit privileged tasks
  * that run before non-privileged tasks that have not yet started, plus
  * distance-sorted execution.  Privilege is indicated by distance == -1
  * and privileged tasks run in order of submission.
+ *
+ * <p>Non-privileged tasks are spread across per-worker queues, each divided
+ * into distance buckets. Workers run the nearest task in their own queue and
+ * steal from other workers when idle. Region tasks are re-bucketed using
+ * current camera distance when {@link #reprioritize()} is called so that
+ * rebuilds submitted before the player moved don't hold up nearby regions.
  */
 public class ChunkRenderExecutor {
-	private final PriorityBlockingQueue<ChunkBuildTask> queue = new PriorityBlockingQueue<>(1024, new Comparator<ChunkBuildTask>() {
-		@Override
-		public int compare(ChunkBuildTask o1, ChunkBuildTask o2) {
-			return Integer.compare(o1.priority, o2.priority);
-		}
-	});
+	/**
+	 * Buckets are one region (16 blocks) of distance wide, so 64 covers
+	 * the maximum render distance with some room for vertical distance.
+	 * Anything farther lands in the last bucket.
+	 */
+	private static final int BUCKET_COUNT = 64;
+	private static final int LAST_BUCKET = BUCKET_COUNT - 1;
 
-	private final int poolSize = threadCount();
+	/**
+	 * Upper bound on idle sleep. Workers are normally woken on submit
+	 * so this only matters if a wake-up is missed.
+	 */
+	private static final long IDLE_PARK_NANOS = 50_000_000L;
 
-	@SuppressWarnings("unused")
+	private final ConcurrentLinkedQueue<Consumer<TerrainRenderContext>> privilegedTasks = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger nextWorker = new AtomicInteger();
+	private final int poolSize = threadCount();
 	private final ImmutableList<Worker> workers;
+	private final Worker[] workerArray;
 
 	public ChunkRenderExecutor() {
 		final ImmutableList.Builder<Worker> builder = ImmutableList.builder();
 
 		for (int i = 0; i < poolSize; i++) {
-			final Worker w = new Worker();
-			builder.add(w);
-
-			final Thread thread = new Thread(
-					new Worker(),
-					"Canvas Render Thread - " + i);
-			thread.setDaemon(true);
-			thread.start();
+			builder.add(new Worker(i));
 		}
 
 		workers = builder.build();
+		workerArray = workers.toArray(new Worker[poolSize]);
+
+		for (final Worker w : workers) {
+			w.thread.start();
+		}
 	}
 
 	private static int threadCount() {
@@ -71,55 +91,332 @@ public class ChunkRenderExecutor {
 		return threadCount > 1 ? threadCount : 1;
 	}
 
+	private static int bucket(int squaredDistance) {
+		final int result = ((int) Math.sqrt(squaredDistance)) >> 4;
+		return result > LAST_BUCKET ? LAST_BUCKET : result;
+	}
+
 	public void execute(Consumer<TerrainRenderContext> task, int squaredDistance) {
-		queue.add(new ChunkBuildTask(task, squaredDistance));
+		if (squaredDistance == -1) {
+			privilegedTasks.offer(task);
+		} else {
+			enqueue(new ChunkBuildTask(task, null, squaredDistance));
+		}
+
+		wakeIdleWorker();
+	}
+
+	/**
+	 * Submits a task for the given region. Priority will track the region's
+	 * camera distance when the executor is reprioritized.
+	 */
+	public void execute(Consumer<TerrainRenderContext> task, BuiltRenderRegion region) {
+		enqueue(new ChunkBuildTask(task, region, region.squaredCameraDistance()));
+		wakeIdleWorker();
+	}
+
+	private void enqueue(ChunkBuildTask task) {
+		final Worker[] workers = workerArray;
+		workers[(nextWorker.getAndIncrement() & Integer.MAX_VALUE) % workers.length].queue.add(task);
+	}
+
+	private void wakeIdleWorker() {
+		Worker w;
+
+		// skip workers that found work on their own after registering as idle
+		while ((w = idleWorkers.poll()) != null) {
+			if (w.isIdle.compareAndSet(true, false)) {
+				LockSupport.unpark(w.thread);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Moves queued region tasks to buckets matching current camera distance.
+	 * Call after region camera distances have been updated.
+	 */
+	public void reprioritize() {
+		for (final Worker w : workerArray) {
+			w.queue.reprioritize();
+		}
 	}
 
 	public void clear() {
-		queue.clear();
+		privilegedTasks.clear();
 
 		for (final Worker w : workers) {
-			w.context.close();
-			w.context = new TerrainRenderContext();
+			w.queue.clear();
+			// worker will replace its context before running the next task
+			w.resetContext = true;
 		}
 	}
 
 	public boolean isEmpty() {
-		return queue.isEmpty();
+		if (!privilegedTasks.isEmpty()) {
+			return false;
+		}
+
+		for (final Worker w : workerArray) {
+			if (!w.queue.isEmpty()) {
+				return false;
+			}
+		}
+
+		return true;
 	}
 
-	private class ChunkBuildTask {
+	private static class ChunkBuildTask {
 		final Consumer<TerrainRenderContext> task;
 
 		/**
-		 * Normally squared distance. Use -1 for privileged execution
+		 * Region being built, if any. Used to refresh priority.
 		 */
-		final int priority;
+		final @Nullable BuiltRenderRegion region;
 
-		ChunkBuildTask(Consumer<TerrainRenderContext> task, int priority) {
+		/**
+		 * Squared distance at time of submission or last reprioritization
+		 */
+		int priority;
+
+		ChunkBuildTask(Consumer<TerrainRenderContext> task, @Nullable BuiltRenderRegion region, int priority) {
 			this.task = task;
+			this.region = region;
 			this.priority = priority;
 		}
 	}
 
+	/**
+	 * Distance-bucketed task queue owned by a single worker.  Bits in
+	 * {@link #bucketFlags} mark non-empty buckets so the nearest task
+	 * can be found without scanning.
+	 */
+	private static class BucketQueue {
+		private final ReentrantLock lock = new ReentrantLock();
+		@SuppressWarnings("unchecked")
+		private final ArrayDeque<ChunkBuildTask>[] buckets = new ArrayDeque[BUCKET_COUNT];
+		private final ArrayList<ChunkBuildTask> reprioritizeList = new ArrayList<>();
+		private volatile long bucketFlags = 0;
+
+		BucketQueue() {
+			for (int i = 0; i < BUCKET_COUNT; ++i) {
+				buckets[i] = new ArrayDeque<>();
+			}
+		}
+
+		void add(ChunkBuildTask task) {
+			final int b = bucket(task.priority);
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				buckets[b].addLast(task);
+				bucketFlags |= (1L << b);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Removes nearest task, if any.
+		 *
+		 * @param wait When false, returns null if another thread holds the lock. Used for stealing.
+		 */
+		@Nullable ChunkBuildTask poll(boolean wait) {
+			if (bucketFlags == 0) {
+				return null;
+			}
+
+			final ReentrantLock lock = this.lock;
+
+			if (wait) {
+				lock.lock();
+			} else if (!lock.tryLock()) {
+				return null;
+			}
+
+			try {
+				final long flags = bucketFlags;
+
+				if (flags == 0) {
+					return null;
+				}
+
+				final int b = Long.numberOfTrailingZeros(flags);
+				final ArrayDeque<ChunkBuildTask> bucket = buckets[b];
+				final ChunkBuildTask result = bucket.pollFirst();
+
+				if (bucket.isEmpty()) {
+					bucketFlags = flags & ~(1L << b);
+				}
+
+				return result;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void reprioritize() {
+			if (bucketFlags == 0) {
+				return;
+			}
+
+			final ArrayList<ChunkBuildTask> list = reprioritizeList;
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				long flags = bucketFlags;
+
+				while (flags != 0) {
+					final int b = Long.numberOfTrailingZeros(flags);
+					flags &= ~(1L << b);
+					list.addAll(buckets[b]);
+					buckets[b].clear();
+				}
+
+				flags = 0;
+				final int limit = list.size();
+
+				for (int i = 0; i < limit; ++i) {
+					final ChunkBuildTask task = list.get(i);
+
+					if (task.region != null) {
+						task.priority = task.region.squaredCameraDistance();
+					}
+
+					final int b = bucket(task.priority);
+					buckets[b].addLast(task);
+					flags |= (1L << b);
+				}
+
+				bucketFlags = flags;
+			} finally {
+				list.clear();
+				lock.unlock();
+			}
+		}
+
+		void clear() {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				for (final ArrayDeque<ChunkBuildTask> b : buckets) {
+					b.clear();
+				}
+
+				bucketFlags = 0;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		boolean isEmpty() {
+			return bucketFlags == 0;
+		}
+	}
+
 	private class Worker implements Runnable {
+		private final int index;
+		private final Thread thread;
+		private final BucketQueue queue = new BucketQueue();
+		private final AtomicBoolean isIdle = new AtomicBoolean();
+		private volatile boolean resetContext = false;
 		private TerrainRenderContext context = new TerrainRenderContext();
 
+		Worker(int index) {
+			this.index = index;
+			thread = new Thread(this, "Canvas Render Thread - " + index);
+			thread.setDaemon(true);
+		}
+
 		@Override
 		public void run() {
 			while (true) {
 				try {
-					final ChunkBuildTask t = queue.take();
+					Consumer<TerrainRenderContext> task = nextTask();
 
-					if (t != null) {
-						t.task.accept(context);
+					if (task == null) {
+						// Register as idle then check again to avoid missing a submit
+						// that happened between the failed poll and registration.
+						if (isIdle.compareAndSet(false, true)) {
+							idleWorkers.offer(this);
+						}
+
+						task = nextTask();
+
+						if (task == null) {
+							LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+							continue;
+						}
+					}
+
+					// still registered if the re-check found work or the park timed out - don't
+					// take a wake-up meant for a parked worker
+					if (isIdle.get() && isIdle.compareAndSet(true, false)) {
+						idleWorkers.remove(this);
 					}
-				} catch (final InterruptedException e) {
-					// NOOP
+
+					if (resetContext) {
+						resetContext = false;
+						context.close();
+						context = new TerrainRenderContext();
+					}
+
+					task.accept(context);
 				} catch (final Exception e) {
 					Sc.LOG.error("Unhandled error during rendering. Impact unknown.", e);
 				}
 			}
 		}
+
+		private @Nullable Consumer<TerrainRenderContext> nextTask() {
+			final Consumer<TerrainRenderContext> privileged = privilegedTasks.poll();
+
+			if (privileged != null) {
+				return privileged;
+			}
+
+			ChunkBuildTask result = queue.poll(true);
+
+			if (result == null) {
+				result = steal();
+			}
+
+			return result == null ? null : result.task;
+		}
+
+		/**
+		 * Takes nearest task from another worker, starting with the next worker in sequence
+		 * so that thieves don't all converge on the same victim.
+		 */
+		private @Nullable ChunkBuildTask steal() {
+			final Worker[] workers = workerArray;
+			final int limit = workers.length;
+
+			for (int i = 1; i < limit; ++i) {
+				final ChunkBuildTask result = workers[(index + i) % limit].queue.poll(false);
+
+				if (result != null) {
+					return result;
+				}
+			}
+
+			// contended on first pass - wait for lock if work remains
+			for (int i = 1; i < limit; ++i) {
+				final BucketQueue victim = workers[(index + i) % limit].queue;
+
+				if (!victim.isEmpty()) {
+					final ChunkBuildTask result = victim.poll(true);
+
+					if (result != null) {
+						return result;
+					}
+				}
+			}
+
+			return null;
+		}
 	}
 }
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.terrain;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Striped open-addressing map with long keys for region lookups shared by render and
+ * terrain iteration threads. Reads never lock: each stripe publishes an array of immutable
+ * entries and a resize replaces the array, so a reader sees either the old or new table.
+ * Writes lock only their own stripe.
+ *
+ * <p>Values that are removed by {@link #prune(Predicate)} or {@link #clear()} are passed to
+ * the removal handler after they are no longer reachable through the map.
+ */
+class ConcurrentLong2ObjectMap<T> {
+	private static final int SEGMENT_BITS = 5;
+	private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+	private static final int MIN_SEGMENT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	@SuppressWarnings("rawtypes")
+	private static final Entry TOMBSTONE = new Entry<>(0, null);
+
+	private final Segment<T>[] segments;
+	private final Consumer<T> removalHandler;
+
+	@SuppressWarnings("unchecked")
+	ConcurrentLong2ObjectMap(int expectedSize, Consumer<T> removalHandler) {
+		this.removalHandler = removalHandler;
+		segments = new Segment[SEGMENT_COUNT];
+		final int capacity = HashCommon.arraySize(Math.max(MIN_SEGMENT_CAPACITY, expectedSize / SEGMENT_COUNT), LOAD_FACTOR);
+
+		for (int i = 0; i < SEGMENT_COUNT; ++i) {
+			segments[i] = new Segment<>(capacity);
+		}
+	}
+
+	private Segment<T> segment(long hash) {
+		return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+	}
+
+	T get(long k) {
+		final long hash = HashCommon.mix(k);
+		return segment(hash).get(k, (int) hash);
+	}
+
+	T computeIfAbsent(long k, LongFunction<? extends T> mappingFunction) {
+		final long hash = HashCommon.mix(k);
+		final Segment<T> segment = segment(hash);
+		final T result = segment.get(k, (int) hash);
+		return result == null ? segment.computeIfAbsent(k, (int) hash, mappingFunction) : result;
+	}
+
+	int size() {
+		int result = 0;
+
+		for (final Segment<T> s : segments) {
+			result += s.size;
+		}
+
+		return result;
+	}
+
+	void clear() {
+		for (final Segment<T> s : segments) {
+			final AtomicReferenceArray<Entry<T>> table = s.clear();
+			final int limit = table.length();
+
+			for (int i = 0; i < limit; ++i) {
+				final Entry<T> e = table.get(i);
+
+				if (e != null && e != TOMBSTONE) {
+					removalHandler.accept(e.value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes values matching the predicate. The predicate first runs without any lock
+	 * held, so lookups and insertions continue while pruning. Matches are tested again
+	 * under the stripe lock immediately before removal, so the predicate may see a value
+	 * twice and must tolerate that.
+	 */
+	void prune(Predicate<T> pruner) {
+		for (final Segment<T> s : segments) {
+			final AtomicReferenceArray<Entry<T>> table = s.table;
+			final int limit = table.length();
+
+			for (int i = 0; i < limit; ++i) {
+				final Entry<T> e = table.get(i);
+
+				if (e != null && e != TOMBSTONE && pruner.test(e.value) && s.remove(e, pruner)) {
+					removalHandler.accept(e.value);
+				}
+			}
+		}
+	}
+
+	private static final class Entry<T> {
+		final long key;
+		final T value;
+
+		Entry(long key, T value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class Segment<T> extends ReentrantLock {
+		private volatile AtomicReferenceArray<Entry<T>> table;
+
+		/** Live entries. Written under lock. */
+		private volatile int size;
+
+		/** Live entries plus tombstones. Guarded by lock. */
+		private int used;
+
+		Segment(int capacity) {
+			table = new AtomicReferenceArray<>(capacity);
+		}
+
+		private static int threshold(int capacity) {
+			return (int) (capacity * LOAD_FACTOR);
+		}
+
+		T get(long k, int hash) {
+			final AtomicReferenceArray<Entry<T>> table = this.table;
+			final int mask = table.length() - 1;
+			int i = hash & mask;
+
+			// load factor guarantees empty slots so probe always terminates
+			while (true) {
+				final Entry<T> e = table.get(i);
+
+				if (e == null) {
+					return null;
+				}
+
+				if (e.key == k && e != TOMBSTONE) {
+					return e.value;
+				}
+
+				i = (i + 1) & mask;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		T computeIfAbsent(long k, int hash, LongFunction<? extends T> mappingFunction) {
+			lock();
+
+			try {
+				final AtomicReferenceArray<Entry<T>> table = this.table;
+				final int mask = table.length() - 1;
+				int i = hash & mask;
+				int tombstoneIndex = -1;
+				Entry<T> e;
+
+				while ((e = table.get(i)) != null) {
+					if (e == TOMBSTONE) {
+						if (tombstoneIndex == -1) {
+							tombstoneIndex = i;
+						}
+					} else if (e.key == k) {
+						return e.value;
+					}
+
+					i = (i + 1) & mask;
+				}
+
+				final T result = mappingFunction.apply(k);
+
+				if (result == null) {
+					return null;
+				}
+
+				if (tombstoneIndex == -1) {
+					table.set(i, new Entry<>(k, result));
+					++used;
+				} else {
+					table.set(tombstoneIndex, new Entry<>(k, result));
+				}
+
+				++size;
+
+				if (used > threshold(table.length())) {
+					rehash();
+				}
+
+				return result;
+			} finally {
+				unlock();
+			}
+		}
+
+		/**
+		 * Removes the given entry if it is still present and still matches the predicate.
+		 */
+		@SuppressWarnings("unchecked")
+		boolean remove(Entry<T> entry, Predicate<T> pruner) {
+			lock();
+
+			try {
+				final AtomicReferenceArray<Entry<T>> table = this.table;
+				final int mask = table.length() - 1;
+				int i = (int) HashCommon.mix(entry.key) & mask;
+				Entry<T> e;
+
+				while ((e = table.get(i)) != null) {
+					if (e == entry) {
+						if (!pruner.test(e.value)) {
+							return false;
+						}
+
+						table.set(i, TOMBSTONE);
+						--size;
+						return true;
+					}
+
+					i = (i + 1) & mask;
+				}
+
+				return false;
+			} finally {
+				unlock();
+			}
+		}
+
+		/**
+		 * Copies live entries to a new table sized for current content and publishes it.
+		 * Readers of the old table still see a consistent, if stale, view.
+		 */
+		private void rehash() {
+			final AtomicReferenceArray<Entry<T>> oldTable = table;
+			final int oldCapacity = oldTable.length();
+			final AtomicReferenceArray<Entry<T>> newTable = new AtomicReferenceArray<>(HashCommon.arraySize(Math.max(MIN_SEGMENT_CAPACITY, size * 2), LOAD_FACTOR));
+			final int mask = newTable.length() - 1;
+
+			for (int j = 0; j < oldCapacity; ++j) {
+				final Entry<T> e = oldTable.get(j);
+
+				if (e != null && e != TOMBSTONE) {
+					int i = (int) HashCommon.mix(e.key) & mask;
+
+					while (newTable.get(i) != null) {
+						i = (i + 1) & mask;
+					}
+
+					newTable.set(i, e);
+				}
+			}
+
+			used = size;
+			table = newTable;
+		}
+
+		/**
+		 * Replaces table with an empty one and returns the prior table.
+		 */
+		AtomicReferenceArray<Entry<T>> clear() {
+			lock();
+
+			try {
+				final AtomicReferenceArray<Entry<T>> result = table;
+				table = new AtomicReferenceArray<>(result.length());
+				size = 0;
+				used = 0;
+				return result;
+			} finally {
+				unlock();
+			}
+		}
+	}
+}
@@ -25,9 +25,12 @@ import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.shorts.ShortArrayList;
 import org.jetbrains.annotations.Nullable;
 
+import static grondag.canvas.terrain.RenderRegionAddressHelper.BRICK_CACHE_SIZE;
+import static grondag.canvas.terrain.RenderRegionAddressHelper.BRICK_CACHE_WORDS;
 import static grondag.canvas.terrain.RenderRegionAddressHelper.EXTERIOR_CACHE_SIZE;
 import static grondag.canvas.terrain.RenderRegionAddressHelper.INTERIOR_CACHE_SIZE;
 import static grondag.canvas.terrain.RenderRegionAddressHelper.TOTAL_CACHE_SIZE;
+import static grondag.canvas.terrain.RenderRegionAddressHelper.cacheIndexToBrickIndex;
 import static grondag.canvas.terrain.RenderRegionAddressHelper.cacheIndexToXyz5;
 import static grondag.canvas.terrain.RenderRegionAddressHelper.interiorIndex;
 
@@ -44,15 +47,16 @@ import net.minecraft.world.level.ColorResolver;
 import net.fabricmc.fabric.api.rendering.data.v1.RenderAttachedBlockView;
 
 public class FastRenderRegion extends AbstractRenderRegion implements RenderAttachedBlockView {
-	private static final int[] EMPTY_AO_CACHE = new int[TOTAL_CACHE_SIZE];
-	private static final int[] EMPTY_LIGHT_CACHE = new int[TOTAL_CACHE_SIZE];
 	private static final Object[] EMPTY_RENDER_DATA = new Object[INTERIOR_CACHE_SIZE];
 	private static final BlockEntity[] EMPTY_BLOCK_ENTITIES = new BlockEntity[INTERIOR_CACHE_SIZE];
 
-	static {
-		Arrays.fill(EMPTY_AO_CACHE, Integer.MAX_VALUE);
-		Arrays.fill(EMPTY_LIGHT_CACHE, Integer.MAX_VALUE);
-	}
+	/**
+	 * Lightmap coordinates only use block light in the low byte and sky light in
+	 * the low byte of the high half, leaving room for AO between them.
+	 */
+	private static final int LIGHT_MASK = 0x00FF00FF;
+	private static final int AO_SHIFT = 8;
+	private static final int AO_MASK = 0xFF << AO_SHIFT;
 
 	public final BlockEntity[] blockEntities = new BlockEntity[INTERIOR_CACHE_SIZE];
 	public final TerrainRenderContext terrainContext;
@@ -70,9 +74,13 @@ public class FastRenderRegion extends AbstractRenderRegion implements RenderAtta
 			return blockState.isOpaqueFullCube(world, searchPos.set(originX + x, originY + y, originZ + z));
 		}
 	};
-	// PERF: pack for reduced memory, better LOC
-	private final int[] aoCache = new int[TOTAL_CACHE_SIZE];
-	private final int[] lightCache = new int[TOTAL_CACHE_SIZE];
+	/**
+	 * Light and AO packed in one word per block, in brick order. Validity is
+	 * tracked in bitsets so prepare only has to clear a few hundred longs.
+	 */
+	private final int[] lightAoCache = new int[BRICK_CACHE_SIZE];
+	private final long[] lightValid = new long[BRICK_CACHE_WORDS];
+	private final long[] aoValid = new long[BRICK_CACHE_WORDS];
 
 	public FastRenderRegion(TerrainRenderContext terrainContext) {
 		this.terrainContext = terrainContext;
@@ -82,8 +90,8 @@ public class FastRenderRegion extends AbstractRenderRegion implements RenderAtta
 		System.arraycopy(protoRegion.chunks, 0, chunks, 0, 16);
 		System.arraycopy(EMPTY_BLOCK_ENTITIES, 0, blockEntities, 0, INTERIOR_CACHE_SIZE);
 		System.arraycopy(EMPTY_RENDER_DATA, 0, renderData, 0, INTERIOR_CACHE_SIZE);
-		System.arraycopy(EMPTY_AO_CACHE, 0, aoCache, 0, TOTAL_CACHE_SIZE);
-		System.arraycopy(EMPTY_LIGHT_CACHE, 0, lightCache, 0, TOTAL_CACHE_SIZE);
+		Arrays.fill(lightValid, 0);
+		Arrays.fill(aoValid, 0);
 
 		world = protoRegion.world;
 
@@ -107,6 +115,7 @@ public class FastRenderRegion extends AbstractRenderRegion implements RenderAtta
 
 		pc.release();
 
+		protoRegion.unpackExterior();
 		System.arraycopy(protoRegion.states, 0, states, INTERIOR_CACHE_SIZE, EXTERIOR_CACHE_SIZE);
 
 		copyBeData(protoRegion);
@@ -114,6 +123,33 @@ public class FastRenderRegion extends AbstractRenderRegion implements RenderAtta
 		occlusion.prepare();
 	}
 
+	/**
+	 * Copies a region prepared by another context, including light and AO computed so far,
+	 * so parts of the same region can be tessellated in parallel. The source must not be
+	 * prepared again until the copy is no longer used.
+	 */
+	public void copyFrom(FastRenderRegion source) {
+		System.arraycopy(source.chunks, 0, chunks, 0, 16);
+		System.arraycopy(source.blockEntities, 0, blockEntities, 0, INTERIOR_CACHE_SIZE);
+		System.arraycopy(source.renderData, 0, renderData, 0, INTERIOR_CACHE_SIZE);
+		System.arraycopy(source.states, 0, states, 0, TOTAL_CACHE_SIZE);
+		System.arraycopy(source.lightAoCache, 0, lightAoCache, 0, BRICK_CACHE_SIZE);
+		System.arraycopy(source.lightValid, 0, lightValid, 0, BRICK_CACHE_WORDS);
+		System.arraycopy(source.aoValid, 0, aoValid, 0, BRICK_CACHE_WORDS);
+
+		world = source.world;
+
+		originX = source.originX;
+		originY = source.originY;
+		originZ = source.originZ;
+
+		chunkBaseX = source.chunkBaseX;
+		chunkBaseY = source.chunkBaseY;
+		chunkBaseZ = source.chunkBaseZ;
+
+		occlusion.copyFrom(source.occlusion);
+	}
+
 	private void copyBeData(ProtoRenderRegion protoRegion) {
 		final ShortArrayList blockEntityPos = protoRegion.blockEntityPos;
 
@@ -192,30 +228,42 @@ public class FastRenderRegion extends AbstractRenderRegion implements RenderAtta
 	}
 
 	public int cachedBrightness(int cacheIndex) {
-		int result = lightCache[cacheIndex];
+		final int brickIndex = cacheIndexToBrickIndex(cacheIndex);
+		final int word = brickIndex >> 6;
+		final long mask = 1L << brickIndex;
 
-		if (result == Integer.MAX_VALUE) {
+		if ((lightValid[word] & mask) == 0) {
 			final BlockState state = states[cacheIndex];
 			final int packedXyz5 = cacheIndexToXyz5(cacheIndex);
 			final int x = (packedXyz5 & 31) - 1 + originX;
 			final int y = ((packedXyz5 >> 5) & 31) - 1 + originY;
 			final int z = (packedXyz5 >> 10) - 1 + originZ;
-			result = WorldRenderer.getLightmapCoordinates(world, state, searchPos.set(x, y, z));
-			lightCache[cacheIndex] = result;
+			final int result = WorldRenderer.getLightmapCoordinates(world, state, searchPos.set(x, y, z)) & LIGHT_MASK;
+			lightAoCache[brickIndex] = (lightAoCache[brickIndex] & AO_MASK) | result;
+			lightValid[word] |= mask;
+			return result;
 		}
 
-		return result;
+		return lightAoCache[brickIndex] & LIGHT_MASK;
 	}
 
 	/**
 	 * For light smoothing.
 	 */
 	public void setLightCache(int x, int y, int z, int val) {
-		lightCache[blockIndex(x, y, z)] = val;
+		final int brickIndex = cacheIndexToBrickIndex(blockIndex(x, y, z));
+		lightAoCache[brickIndex] = (lightAoCache[brickIndex] & AO_MASK) | (val & LIGHT_MASK);
+		lightValid[brickIndex >> 6] |= 1L << brickIndex;
 	}
 
-	public int directBrightness(BlockPos pos) {
-		return WorldRenderer.getLightmapCoordinates(world, getBlockState(pos), pos);
+	/**
+	 * For light smoothing. Uncached light at the given world position, or -1 if the block
+	 * there is an opaque full cube. Block states come from the region cache when possible.
+	 */
+	public int lightSample(int x, int y, int z) {
+		final BlockState state = getBlockState(x, y, z);
+		searchPos.set(x, y, z);
+		return state.isOpaqueFullCube(this, searchPos) ? -1 : WorldRenderer.getLightmapCoordinates(world, state, searchPos) & LIGHT_MASK;
 	}
 
 	// TODO: do anything with this?
@@ -226,10 +274,13 @@ public class FastRenderRegion extends AbstractRenderRegion implements RenderAtta
 	}
 
 	public int cachedAoLevel(int cacheIndex) {
-		int result = aoCache[cacheIndex];
+		final int brickIndex = cacheIndexToBrickIndex(cacheIndex);
+		final int word = brickIndex >> 6;
+		final long mask = 1L << brickIndex;
 
-		if (result == Integer.MAX_VALUE) {
+		if ((aoValid[word] & mask) == 0) {
 			final BlockState state = states[cacheIndex];
+			final int result;
 
 			if (state.getLuminance() == 0) {
 				final int packedXyz5 = cacheIndexToXyz5(cacheIndex);
@@ -241,10 +292,12 @@ public class FastRenderRegion extends AbstractRenderRegion implements RenderAtta
 				result = 255;
 			}
 
-			aoCache[cacheIndex] = result;
+			lightAoCache[brickIndex] = (lightAoCache[brickIndex] & LIGHT_MASK) | (result << AO_SHIFT);
+			aoValid[word] |= mask;
+			return result;
 		}
 
-		return result;
+		return (lightAoCache[brickIndex] & AO_MASK) >> AO_SHIFT;
 	}
 
 	@Override
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.terrain;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+import grondag.canvas.mixinterface.PackedIntegerArrayExt;
+import grondag.canvas.terrain.ChunkPaletteCopier.PaletteCopy;
+import org.apache.commons.lang3.ObjectUtils;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.collection.PackedIntegerArray;
+import net.minecraft.world.chunk.Palette;
+
+/**
+ * Raw copy of chunk section storage. Capture is a single array copy so it is
+ * cheap enough for the main thread; palette ids are unpacked on read.
+ *
+ * <p>Holds a reference to the live palette, same as {@link ChunkPaletteCopier}
+ * copies. Palettes only grow, so ids present at capture remain valid.
+ */
+public class PackedSectionSnapshot implements PaletteCopy {
+	private static final ArrayBlockingQueue<PackedSectionSnapshot> POOL = new ArrayBlockingQueue<>(1024);
+
+	// 4096 states at up to 16 bits each
+	private long[] storage = new long[1024];
+	private int elementBits;
+	private int elementsPerWord;
+	private long mask;
+	private Palette<BlockState> palette;
+	private BlockState emptyVal;
+
+	static PackedSectionSnapshot claim(Palette<BlockState> palette, PackedIntegerArray data, BlockState emptyVal) {
+		PackedSectionSnapshot result = POOL.poll();
+
+		if (result == null) {
+			result = new PackedSectionSnapshot();
+		}
+
+		result.palette = palette;
+		result.emptyVal = emptyVal;
+		((PackedIntegerArrayExt) data).canvas_copyTo(result);
+		return result;
+	}
+
+	/**
+	 * Callback from canvas_copyTo()
+	 */
+	public void load(long[] storage, int elementBits, int elementsPerWord, long mask) {
+		final int len = storage.length;
+
+		if (this.storage.length < len) {
+			this.storage = new long[len];
+		}
+
+		System.arraycopy(storage, 0, this.storage, 0, len);
+		this.elementBits = elementBits;
+		this.elementsPerWord = elementsPerWord;
+		this.mask = mask;
+	}
+
+	@Override
+	public BlockState apply(int index) {
+		final int word = index / elementsPerWord;
+		final int shift = (index - word * elementsPerWord) * elementBits;
+		final int id = (int) ((storage[word] >> shift) & mask);
+		return ObjectUtils.defaultIfNull(palette.getByIndex(id), emptyVal);
+	}
+
+	@Override
+	public void release() {
+		palette = null;
+		emptyVal = null;
+		POOL.offer(this);
+	}
+}
@@ -16,6 +16,7 @@
 
 package grondag.canvas.terrain;
 
+import grondag.canvas.Configurator;
 import grondag.canvas.perf.ChunkRebuildCounters;
 import grondag.canvas.terrain.ChunkPaletteCopier.PaletteCopy;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
@@ -58,6 +59,35 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 	final ShortArrayList blockEntityPos = new ShortArrayList();
 	PaletteCopy mainSectionCopy;
 
+	/**
+	 * Capture sequence of this snapshot within the owning region. Zero for dummy regions.
+	 */
+	int buildSequence;
+
+	/**
+	 * Sequence of the capture that {@link #dirtySubcubes} is relative to.
+	 */
+	int baseSequence;
+	long dirtySubcubes;
+
+	/**
+	 * Neighbor section accessors indexed by x + y * 3 + z * 9.  Center is not used.
+	 * Holds packed snapshots when world copy is deferred, or live section readers otherwise.
+	 */
+	private final PaletteCopy[] sections = new PaletteCopy[27];
+	private final SectionReader[] sectionReaders = new SectionReader[27];
+
+	/**
+	 * True when exterior states have not yet been unpacked from section snapshots.
+	 */
+	private boolean needsUnpack;
+
+	ProtoRenderRegion() {
+		for (int i = 0; i < 27; ++i) {
+			sectionReaders[i] = new SectionReader();
+		}
+	}
+
 	public static ProtoRenderRegion claim(ClientWorld world, BlockPos origin) {
 		final ProtoRenderRegion result = POOL.poll();
 		return (result == null ? new ProtoRenderRegion() : result).prepare(world, origin);
@@ -95,8 +125,9 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 		this.chunkBaseY = chunkBaseY;
 		this.chunkBaseZ = chunkBaseZ;
 
+		final boolean defer = Configurator.deferWorldCopy;
 		final WorldChunk mainChunk = world.getChunk(chunkBaseX + 1, chunkBaseZ + 1);
-		mainSectionCopy = ChunkPaletteCopier.captureCopy(mainChunk, 1 + chunkBaseY);
+		mainSectionCopy = defer ? ChunkPaletteCopier.captureSnapshot(mainChunk, 1 + chunkBaseY) : ChunkPaletteCopier.captureCopy(mainChunk, 1 + chunkBaseY);
 
 		final ProtoRenderRegion result;
 
@@ -115,9 +146,14 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 			chunks[2 | (1 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 1);
 			chunks[2 | (2 << 2)] = world.getChunk(chunkBaseX + 2, chunkBaseZ + 2);
 
-			captureCorners();
-			captureEdges();
-			captureFaces();
+			if (defer) {
+				// only packed storage is copied here - states are unpacked on the worker thread
+				captureSections(true);
+				needsUnpack = true;
+			} else {
+				captureSections(false);
+				captureExterior();
+			}
 
 			result = this;
 		}
@@ -129,6 +165,67 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 		return result;
 	}
 
+	private void captureSections(boolean snapshot) {
+		for (int x = 0; x < 3; ++x) {
+			for (int y = 0; y < 3; ++y) {
+				for (int z = 0; z < 3; ++z) {
+					final int index = x + y * 3 + z * 9;
+
+					if (index != 13) {
+						final ChunkSection section = getSection(x, y, z);
+
+						if (snapshot) {
+							sections[index] = ChunkPaletteCopier.captureSnapshot(section);
+						} else if (section == null) {
+							sections[index] = ChunkPaletteCopier.AIR_COPY;
+						} else {
+							final SectionReader reader = sectionReaders[index];
+							reader.section = section;
+							sections[index] = reader;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void captureExterior() {
+		captureCorners();
+		captureEdges();
+		captureFaces();
+		releaseSections();
+	}
+
+	/**
+	 * Fills exterior states from section snapshots if that was deferred during capture.
+	 * Called from the thread that builds the region.
+	 */
+	void unpackExterior() {
+		if (needsUnpack) {
+			needsUnpack = false;
+			captureExterior();
+		}
+	}
+
+	private void releaseSections() {
+		for (int i = 0; i < 27; ++i) {
+			final PaletteCopy section = sections[i];
+
+			if (section != null) {
+				section.release();
+				sections[i] = null;
+			}
+		}
+	}
+
+	private PaletteCopy section(int x, int y, int z) {
+		return sections[x + y * 3 + z * 9];
+	}
+
+	private static int sectionIndex(int x, int y, int z) {
+		return x | (y << 8) | (z << 4);
+	}
+
 	PaletteCopy takePaletteCopy() {
 		final PaletteCopy result = mainSectionCopy;
 		mainSectionCopy = null;
@@ -167,58 +264,58 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 	}
 
 	private void captureFaces() {
-		final ChunkSection lowX = getSection(0, 1, 1);
-		final ChunkSection highX = getSection(2, 1, 1);
-		final ChunkSection lowZ = getSection(1, 1, 0);
-		final ChunkSection highZ = getSection(1, 1, 2);
-		final ChunkSection lowY = getSection(1, 0, 1);
-		final ChunkSection highY = getSection(1, 2, 1);
+		final PaletteCopy lowX = section(0, 1, 1);
+		final PaletteCopy highX = section(2, 1, 1);
+		final PaletteCopy lowZ = section(1, 1, 0);
+		final PaletteCopy highZ = section(1, 1, 2);
+		final PaletteCopy lowY = section(1, 0, 1);
+		final PaletteCopy highY = section(1, 2, 1);
 
 		for (int i = 0; i < 16; i++) {
 			for (int j = 0; j < 16; j++) {
-				states[localXfaceIndex(false, i, j) - INTERIOR_CACHE_SIZE] = lowX == null ? AIR : lowX.getBlockState(15, i, j);
-				states[localXfaceIndex(true, i, j) - INTERIOR_CACHE_SIZE] = highX == null ? AIR : highX.getBlockState(0, i, j);
+				states[localXfaceIndex(false, i, j) - INTERIOR_CACHE_SIZE] = lowX.apply(sectionIndex(15, i, j));
+				states[localXfaceIndex(true, i, j) - INTERIOR_CACHE_SIZE] = highX.apply(sectionIndex(0, i, j));
 
-				states[localZfaceIndex(i, j, false) - INTERIOR_CACHE_SIZE] = lowZ == null ? AIR : lowZ.getBlockState(i, j, 15);
-				states[localZfaceIndex(i, j, true) - INTERIOR_CACHE_SIZE] = highZ == null ? AIR : highZ.getBlockState(i, j, 0);
+				states[localZfaceIndex(i, j, false) - INTERIOR_CACHE_SIZE] = lowZ.apply(sectionIndex(i, j, 15));
+				states[localZfaceIndex(i, j, true) - INTERIOR_CACHE_SIZE] = highZ.apply(sectionIndex(i, j, 0));
 
-				states[localYfaceIndex(i, false, j) - INTERIOR_CACHE_SIZE] = lowY == null ? AIR : lowY.getBlockState(i, 15, j);
-				states[localYfaceIndex(i, true, j) - INTERIOR_CACHE_SIZE] = highY == null ? AIR : highY.getBlockState(i, 0, j);
+				states[localYfaceIndex(i, false, j) - INTERIOR_CACHE_SIZE] = lowY.apply(sectionIndex(i, 15, j));
+				states[localYfaceIndex(i, true, j) - INTERIOR_CACHE_SIZE] = highY.apply(sectionIndex(i, 0, j));
 			}
 		}
 	}
 
 	private void captureEdges() {
-		final ChunkSection aaZ = getSection(0, 0, 1);
-		final ChunkSection abZ = getSection(0, 2, 1);
-		final ChunkSection baZ = getSection(2, 0, 1);
-		final ChunkSection bbZ = getSection(2, 2, 1);
+		final PaletteCopy aaZ = section(0, 0, 1);
+		final PaletteCopy abZ = section(0, 2, 1);
+		final PaletteCopy baZ = section(2, 0, 1);
+		final PaletteCopy bbZ = section(2, 2, 1);
 
-		final ChunkSection aYa = getSection(0, 1, 0);
-		final ChunkSection aYb = getSection(0, 1, 2);
-		final ChunkSection bYa = getSection(2, 1, 0);
-		final ChunkSection bYb = getSection(2, 1, 2);
+		final PaletteCopy aYa = section(0, 1, 0);
+		final PaletteCopy aYb = section(0, 1, 2);
+		final PaletteCopy bYa = section(2, 1, 0);
+		final PaletteCopy bYb = section(2, 1, 2);
 
-		final ChunkSection Xaa = getSection(1, 0, 0);
-		final ChunkSection Xab = getSection(1, 0, 2);
-		final ChunkSection Xba = getSection(1, 2, 0);
-		final ChunkSection Xbb = getSection(1, 2, 2);
+		final PaletteCopy Xaa = section(1, 0, 0);
+		final PaletteCopy Xab = section(1, 0, 2);
+		final PaletteCopy Xba = section(1, 2, 0);
+		final PaletteCopy Xbb = section(1, 2, 2);
 
 		for (int i = 0; i < 16; i++) {
-			states[localZEdgeIndex(false, false, i) - INTERIOR_CACHE_SIZE] = aaZ == null ? AIR : aaZ.getBlockState(15, 15, i);
-			states[localZEdgeIndex(false, true, i) - INTERIOR_CACHE_SIZE] = abZ == null ? AIR : abZ.getBlockState(15, 0, i);
-			states[localZEdgeIndex(true, false, i) - INTERIOR_CACHE_SIZE] = baZ == null ? AIR : baZ.getBlockState(0, 15, i);
-			states[localZEdgeIndex(true, true, i) - INTERIOR_CACHE_SIZE] = bbZ == null ? AIR : bbZ.getBlockState(0, 0, i);
-
-			states[localYEdgeIndex(false, i, false) - INTERIOR_CACHE_SIZE] = aYa == null ? AIR : aYa.getBlockState(15, i, 15);
-			states[localYEdgeIndex(false, i, true) - INTERIOR_CACHE_SIZE] = aYb == null ? AIR : aYb.getBlockState(15, i, 0);
-			states[localYEdgeIndex(true, i, false) - INTERIOR_CACHE_SIZE] = bYa == null ? AIR : bYa.getBlockState(0, i, 15);
-			states[localYEdgeIndex(true, i, true) - INTERIOR_CACHE_SIZE] = bYb == null ? AIR : bYb.getBlockState(0, i, 0);
-
-			states[localXEdgeIndex(i, false, false) - INTERIOR_CACHE_SIZE] = Xaa == null ? AIR : Xaa.getBlockState(i, 15, 15);
-			states[localXEdgeIndex(i, false, true) - INTERIOR_CACHE_SIZE] = Xab == null ? AIR : Xab.getBlockState(i, 15, 0);
-			states[localXEdgeIndex(i, true, false) - INTERIOR_CACHE_SIZE] = Xba == null ? AIR : Xba.getBlockState(i, 0, 15);
-			states[localXEdgeIndex(i, true, true) - INTERIOR_CACHE_SIZE] = Xbb == null ? AIR : Xbb.getBlockState(i, 0, 0);
+			states[localZEdgeIndex(false, false, i) - INTERIOR_CACHE_SIZE] = aaZ.apply(sectionIndex(15, 15, i));
+			states[localZEdgeIndex(false, true, i) - INTERIOR_CACHE_SIZE] = abZ.apply(sectionIndex(15, 0, i));
+			states[localZEdgeIndex(true, false, i) - INTERIOR_CACHE_SIZE] = baZ.apply(sectionIndex(0, 15, i));
+			states[localZEdgeIndex(true, true, i) - INTERIOR_CACHE_SIZE] = bbZ.apply(sectionIndex(0, 0, i));
+
+			states[localYEdgeIndex(false, i, false) - INTERIOR_CACHE_SIZE] = aYa.apply(sectionIndex(15, i, 15));
+			states[localYEdgeIndex(false, i, true) - INTERIOR_CACHE_SIZE] = aYb.apply(sectionIndex(15, i, 0));
+			states[localYEdgeIndex(true, i, false) - INTERIOR_CACHE_SIZE] = bYa.apply(sectionIndex(0, i, 15));
+			states[localYEdgeIndex(true, i, true) - INTERIOR_CACHE_SIZE] = bYb.apply(sectionIndex(0, i, 0));
+
+			states[localXEdgeIndex(i, false, false) - INTERIOR_CACHE_SIZE] = Xaa.apply(sectionIndex(i, 15, 15));
+			states[localXEdgeIndex(i, false, true) - INTERIOR_CACHE_SIZE] = Xab.apply(sectionIndex(i, 15, 0));
+			states[localXEdgeIndex(i, true, false) - INTERIOR_CACHE_SIZE] = Xba.apply(sectionIndex(i, 0, 15));
+			states[localXEdgeIndex(i, true, true) - INTERIOR_CACHE_SIZE] = Xbb.apply(sectionIndex(i, 0, 0));
 		}
 	}
 
@@ -235,8 +332,7 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 	}
 
 	private BlockState captureCornerState(int x, int y, int z) {
-		final ChunkSection section = getSection(x, y, z);
-		return section == null ? AIR : section.getBlockState(x == 0 ? 15 : 0, y == 0 ? 15 : 0, z == 0 ? 15 : 0);
+		return section(x, y, z).apply(sectionIndex(x == 0 ? 15 : 0, y == 0 ? 15 : 0, z == 0 ? 15 : 0));
 	}
 
 	public void release() {
@@ -245,6 +341,9 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 			mainSectionCopy = null;
 		}
 
+		needsUnpack = false;
+		releaseSections();
+
 		for (int x = 0; x < 3; x++) {
 			for (int z = 0; z < 3; z++) {
 				chunks[x | (z << 2)] = null;
@@ -257,6 +356,23 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 		release(this);
 	}
 
+	/**
+	 * Reads directly from a live section when world copy is not deferred.
+	 */
+	private static class SectionReader implements PaletteCopy {
+		private ChunkSection section;
+
+		@Override
+		public BlockState apply(int index) {
+			return section.getBlockState(index & 0xF, (index >> 8) & 0xF, (index >> 4) & 0xF);
+		}
+
+		@Override
+		public void release() {
+			section = null;
+		}
+	}
+
 	private static class DummyRegion extends ProtoRenderRegion {
 		@Override
 		public void release() {
@@ -16,17 +16,29 @@
 
 package grondag.canvas.terrain;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.WorldChunk;
 
 public class RegionChunkReference {
+	/** Reference count of a disposed instance - can no longer be retained. */
+	private static final int DISPOSED = -1;
+
 	private final ClientWorld world;
 
 	private final int chunkX;
 	private final int chunkZ;
 	private boolean areCornersLoadedCache = false;
-	private int refCount = 0;
+	private final AtomicInteger refCount = new AtomicInteger();
+
+	/**
+	 * Index of this column in region storage frustum arrays, -1 if not assigned.
+	 */
+	int frustumSlot = -1;
 
 	public RegionChunkReference(ClientWorld world, long chunkPos) {
 		this.world = world;
@@ -51,15 +63,49 @@ public class RegionChunkReference {
 		return result;
 	}
 
-	public void retain(BuiltRenderRegion region) {
-		++refCount;
+	/**
+	 * Reads the chunk entity list without synchronization so may be stale
+	 * when called off-thread.  Only suitable for heuristics.
+	 */
+	public boolean hasEntities(int sectionY) {
+		if (sectionY < 0 || sectionY > 15) {
+			return false;
+		}
+
+		final Chunk chunk = world.getChunk(chunkX, chunkZ, ChunkStatus.FULL, false);
+		return chunk instanceof WorldChunk && !((WorldChunk) chunk).getEntitySectionArray()[sectionY].isEmpty();
+	}
+
+	/**
+	 * Regions are created and pruned on different threads, so retain
+	 * fails if this instance was disposed and the caller must look up a new one.
+	 */
+	public boolean retain() {
+		final AtomicInteger refCount = this.refCount;
+
+		while (true) {
+			final int count = refCount.get();
+
+			if (count == DISPOSED) {
+				return false;
+			}
+
+			if (refCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
 	}
 
-	public void release(BuiltRenderRegion region) {
-		--refCount;
+	public void release() {
+		refCount.decrementAndGet();
 	}
 
-	public boolean isEmpty() {
-		return refCount == 0;
+	/**
+	 * Marks an unreferenced instance as disposed so it can't be retained again.
+	 * Also true if already disposed.
+	 */
+	public boolean tryDispose() {
+		final int count = refCount.get();
+		return count == DISPOSED || (count == 0 && refCount.compareAndSet(0, DISPOSED));
 	}
 }
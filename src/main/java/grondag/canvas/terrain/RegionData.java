@@ -40,6 +40,17 @@ public class RegionData {
 	@Nullable
 	int[] translucentState;
 
+	/**
+	 * Non-null when translucent quad order can only change as camera crosses quad extents.
+	 */
+	@Nullable
+	TranslucentSortPlanes translucentPlanes;
+
+	/**
+	 * Plane grid cell of camera at last translucent sort. Written by build threads, read on render thread.
+	 */
+	volatile int translucentSortCell = TranslucentSortPlanes.NO_CELL;
+
 	public List<BlockEntity> getBlockEntities() {
 		return blockEntities;
 	}
@@ -50,9 +61,28 @@ public class RegionData {
 		if (buffer != null) {
 			buffer.sortQuads(x, y, z);
 			translucentState = buffer.saveState(translucentState);
+
+			if (translucentState != null) {
+				translucentPlanes = TranslucentSortPlanes.of(translucentState, buffer.format().vertexStrideInts);
+				updateSortCell(x, y, z);
+			}
 		}
 	}
 
+	/**
+	 * True if camera at the given position, relative to the sort origin, may
+	 * see a different translucent quad order than at the last sort.
+	 */
+	boolean needsResort(float x, float y, float z) {
+		final TranslucentSortPlanes planes = translucentPlanes;
+		return planes == null || planes.cell(x, y, z) != translucentSortCell;
+	}
+
+	void updateSortCell(float x, float y, float z) {
+		final TranslucentSortPlanes planes = translucentPlanes;
+		translucentSortCell = planes == null ? TranslucentSortPlanes.NO_CELL : planes.cell(x, y, z);
+	}
+
 	public int[] getOcclusionData() {
 		return occlusionData;
 	}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.terrain;
+
+import java.util.Arrays;
+
+import grondag.canvas.buffer.encoding.VertexCollectorImpl;
+import grondag.canvas.buffer.encoding.VertexCollectorList;
+import grondag.canvas.material.MaterialState;
+import grondag.canvas.terrain.occlusion.region.OcclusionRegion;
+
+import static grondag.canvas.terrain.RenderRegionAddressHelper.INTERIOR_CACHE_WORDS;
+
+/**
+ * Vertex data from a completed region build, partitioned by 4x4x4 sub-cube.
+ * Lets a rebuild after a small change tessellate only the sub-cubes that
+ * changed and copy everything else from the prior build.
+ *
+ * <p>Sub-cube index is (x >> 2) | ((y >> 2) << 2) | ((z >> 2) << 4) using
+ * interior coordinates, so one bit per sub-cube fits in a long.
+ */
+class RegionMeshState {
+	static final int SUBCUBE_COUNT = 64;
+	static final long ALL_SUBCUBES = -1L;
+
+	// bits within an interior occlusion word that belong to sub-cube x = 0
+	private static final long SUBCUBE_WORD_MASK = 0x000F000F000F000FL;
+
+	private static final ThreadLocal<Builder> BUILDER = ThreadLocal.withInitial(Builder::new);
+
+	/**
+	 * Capture sequence of the region snapshot this mesh was built from.
+	 */
+	final int buildSequence;
+
+	/**
+	 * Renderable interior positions at time of build. Changes in visibility
+	 * of positions outside the dirty sub-cubes also require re-tessellation.
+	 */
+	final long[] renderable = new long[INTERIOR_CACHE_WORDS];
+	private final MaterialState[] materials;
+	private final int[][] data;
+
+	/**
+	 * End offset, in ints, of each sub-cube within data for each material.
+	 */
+	private final int[][] ends;
+
+	private RegionMeshState(int buildSequence, int materialCount) {
+		this.buildSequence = buildSequence;
+		materials = new MaterialState[materialCount];
+		data = new int[materialCount][];
+		ends = new int[materialCount][];
+	}
+
+	/**
+	 * Appends vertex data of the given sub-cube from the prior build.
+	 */
+	void appendSubcube(int subcube, VertexCollectorList collectors) {
+		final int limit = materials.length;
+
+		for (int i = 0; i < limit; ++i) {
+			final int[] ends = this.ends[i];
+			final int start = subcube == 0 ? 0 : ends[subcube - 1];
+			final int length = ends[subcube] - start;
+
+			if (length > 0) {
+				collectors.get(materials[i]).add(data[i], start, length);
+			}
+		}
+	}
+
+	/**
+	 * Sub-cubes containing positions that became renderable or stopped being renderable.
+	 */
+	long changedSubcubes(OcclusionRegion occlusion) {
+		long result = 0;
+
+		for (int word = 0; word < INTERIOR_CACHE_WORDS; ++word) {
+			final long diff = renderable[word] ^ occlusion.renderableWord(word);
+
+			if (diff != 0) {
+				// each word holds four y layers of one z layer
+				final int base = ((word & 3) << 2) | ((word >> 4) << 4);
+
+				for (int x = 0; x < 4; ++x) {
+					if ((diff & (SUBCUBE_WORD_MASK << (x << 2))) != 0) {
+						result |= 1L << (base | x);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Interior cache index of the n-th position (0-63) within a sub-cube.
+	 */
+	static int interiorIndex(int subcube, int n) {
+		final int x = ((subcube & 3) << 2) | (n & 3);
+		final int y = (((subcube >> 2) & 3) << 2) | ((n >> 2) & 3);
+		final int z = ((subcube >> 4) << 2) | (n >> 4);
+		return x | (y << 4) | (z << 8);
+	}
+
+	/**
+	 * Sub-cubes overlapping the given interior coordinate range, inclusive.
+	 * Coordinates must be clamped to 0-15.
+	 */
+	static long subcubeMask(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		long result = 0;
+
+		for (int z = minZ >> 2; z <= maxZ >> 2; ++z) {
+			for (int y = minY >> 2; y <= maxY >> 2; ++y) {
+				for (int x = minX >> 2; x <= maxX >> 2; ++x) {
+					result |= 1L << (x | (y << 2) | (z << 4));
+				}
+			}
+		}
+
+		return result;
+	}
+
+	static Builder builder() {
+		final Builder result = BUILDER.get();
+		result.clear();
+		return result;
+	}
+
+	/**
+	 * Records collector sizes after each sub-cube during tessellation.
+	 * Slot 0 is the translucent collector and slot n is solid collector n - 1.
+	 */
+	static class Builder {
+		private int[][] ends = new int[8][SUBCUBE_COUNT];
+		private int slotCount;
+
+		void clear() {
+			slotCount = 0;
+		}
+
+		void endSubcube(int subcube, VertexCollectorList collectors) {
+			final int newCount = collectors.solidCount() + 1;
+
+			if (newCount > slotCount) {
+				if (newCount > ends.length) {
+					final int[][] newEnds = Arrays.copyOf(ends, Math.max(newCount, ends.length * 2));
+
+					for (int i = ends.length; i < newEnds.length; ++i) {
+						newEnds[i] = new int[SUBCUBE_COUNT];
+					}
+
+					ends = newEnds;
+				}
+
+				// collectors added during this sub-cube were empty before it
+				for (int i = slotCount; i < newCount; ++i) {
+					Arrays.fill(ends[i], 0, subcube, 0);
+				}
+
+				slotCount = newCount;
+			}
+
+			ends[0][subcube] = collectors.getTranslucent().integerSize();
+
+			for (int i = 1; i < newCount; ++i) {
+				ends[i][subcube] = collectors.getSolid(i - 1).integerSize();
+			}
+		}
+
+		/**
+		 * Call after all sub-cubes are complete and before translucent quads are sorted.
+		 */
+		RegionMeshState build(int buildSequence, VertexCollectorList collectors, OcclusionRegion occlusion) {
+			int materialCount = 0;
+
+			for (int i = 0; i < slotCount; ++i) {
+				if (ends[i][SUBCUBE_COUNT - 1] > 0) {
+					++materialCount;
+				}
+			}
+
+			final RegionMeshState result = new RegionMeshState(buildSequence, materialCount);
+			int n = 0;
+
+			for (int i = 0; i < slotCount; ++i) {
+				if (ends[i][SUBCUBE_COUNT - 1] > 0) {
+					final VertexCollectorImpl collector = i == 0 ? collectors.getTranslucent() : collectors.getSolid(i - 1);
+					result.materials[n] = collector.materialState();
+					result.data[n] = collector.saveState(null);
+					result.ends[n] = Arrays.copyOf(ends[i], SUBCUBE_COUNT);
+					++n;
+				}
+			}
+
+			for (int word = 0; word < INTERIOR_CACHE_WORDS; ++word) {
+				result.renderable[word] = occlusion.renderableWord(word);
+			}
+
+			return result;
+		}
+	}
+}
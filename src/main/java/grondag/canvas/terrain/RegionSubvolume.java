@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.terrain;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
+
+/**
+ * Tessellates one sub-volume of a region on a pool thread while the render thread
+ * tessellates another. Sub-volume n is the 16 sub-cubes with z index n, so appending
+ * sub-volumes in order gives the same vertex order as a serial build.
+ *
+ * <p>Each instance owns a render context and is reused. Not thread-safe: only one
+ * region build may use an instance at a time.
+ */
+class RegionSubvolume {
+	static final int COUNT = 4;
+	static final int SUBCUBES = RegionMeshState.SUBCUBE_COUNT / COUNT;
+
+	private final RegionMeshState.Builder meshBuilder = new RegionMeshState.Builder();
+	private TerrainRenderContext context = new TerrainRenderContext();
+	private ForkJoinTask<RegionMeshState> task;
+
+	static boolean isEnabled() {
+		return ForkJoinPool.getCommonPoolParallelism() > 1;
+	}
+
+	static RegionSubvolume[] create() {
+		final RegionSubvolume[] result = new RegionSubvolume[COUNT - 1];
+
+		for (int i = 0; i < COUNT - 1; ++i) {
+			result[i] = new RegionSubvolume();
+		}
+
+		return result;
+	}
+
+	static int indexOf(int subcube) {
+		return subcube / SUBCUBES;
+	}
+
+	/**
+	 * Copies the prepared region from the source context and starts tessellation.
+	 * Call before the source context tessellates anything.
+	 *
+	 * @param skipSubcubes sub-cubes reused from a prior build, not tessellated
+	 */
+	void start(BuiltRenderRegion owner, TerrainRenderContext source, int index, long skipSubcubes, int xModelOffset, int yModelOffset, int zModelOffset) {
+		assert task == null;
+		final TerrainRenderContext context = this.context.prepareRegion(source);
+		final int firstSubcube = index * SUBCUBES;
+		final int lastSubcube = firstSubcube + SUBCUBES;
+
+		task = ForkJoinPool.commonPool().submit(() -> {
+			final RegionMeshState.Builder meshBuilder = this.meshBuilder;
+			// may hold output of a build that failed
+			context.collectors.clear();
+			meshBuilder.clear();
+
+			// every sub-cube is recorded so the result indexes like a full build
+			for (int subcube = 0; subcube < RegionMeshState.SUBCUBE_COUNT; ++subcube) {
+				if (subcube >= firstSubcube && subcube < lastSubcube && (skipSubcubes & (1L << subcube)) == 0) {
+					owner.tesselateSubcube(context, subcube, xModelOffset, yModelOffset, zModelOffset);
+				}
+
+				meshBuilder.endSubcube(subcube, context.collectors);
+			}
+
+			final RegionMeshState result = meshBuilder.build(0, context.collectors, context.region.occlusion);
+			context.collectors.clear();
+			return result;
+		});
+	}
+
+	/**
+	 * Waits for tessellation started by {@link #start} and returns the result.
+	 */
+	RegionMeshState join() {
+		return task.join();
+	}
+
+	/**
+	 * Waits for tessellation, if started, and moves lightmap references to the given context.
+	 * Always call after {@link #start} even if the build is abandoned.
+	 */
+	void finish(TerrainRenderContext target) {
+		final ForkJoinTask<RegionMeshState> task = this.task;
+
+		if (task != null) {
+			this.task = null;
+
+			try {
+				task.quietlyJoin();
+			} finally {
+				target.hdLightmaps.transferFrom(context.hdLightmaps);
+			}
+		}
+	}
+
+	void close() {
+		if (task != null) {
+			task.quietlyJoin();
+			task = null;
+		}
+
+		context.hdLightmaps.releaseAll();
+		context.close();
+		context = new TerrainRenderContext();
+	}
+}
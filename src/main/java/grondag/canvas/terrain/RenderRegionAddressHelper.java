@@ -41,9 +41,16 @@ public abstract class RenderRegionAddressHelper {
 	public static final int INTERIOR_CACHE_WORDS = INTERIOR_CACHE_SIZE / 64;
 	public static final int EXTERIOR_CACHE_WORDS = (EXTERIOR_CACHE_SIZE + 63) / 64;
 	public static final int TOTAL_CACHE_WORDS = INTERIOR_CACHE_WORDS + EXTERIOR_CACHE_WORDS;
+	/**
+	 * Size of caches laid out in 4x4x4 bricks covering the 18x18x18 region (padded to 20).
+	 * Keeps the 3x3x3 neighborhood of a block within a few cache lines.
+	 */
+	public static final int BRICK_CACHE_SIZE = 5 * 5 * 5 * 64;
+	public static final int BRICK_CACHE_WORDS = BRICK_CACHE_SIZE / 64;
 	protected static final BlockState AIR = Blocks.AIR.getDefaultState();
 	static final int[] REVERSE_INDEX_LOOKUP = new int[TOTAL_CACHE_SIZE];
 	static final int[] INDEX_LOOKUP = new int[32768];
+	static final int[] BRICK_INDEX_LOOKUP = new int[TOTAL_CACHE_SIZE];
 
 	static {
 		Arrays.fill(INDEX_LOOKUP, -1);
@@ -55,11 +62,20 @@ public abstract class RenderRegionAddressHelper {
 					final int cacheIndex = computeRelativeBlockIndex(x, y, z);
 					INDEX_LOOKUP[fastIndex] = cacheIndex;
 					REVERSE_INDEX_LOOKUP[cacheIndex] = fastIndex;
+					BRICK_INDEX_LOOKUP[cacheIndex] = computeBrickIndex(x + 1, y + 1, z + 1);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Inputs are 0-17, offset by one from region-relative coordinates.
+	 */
+	private static int computeBrickIndex(int x, int y, int z) {
+		final int brick = (x >> 2) + (y >> 2) * 5 + (z >> 2) * 25;
+		return (brick << 6) | (x & 3) | ((y & 3) << 2) | ((z & 3) << 4);
+	}
+
 	private RenderRegionAddressHelper() {
 	}
 
@@ -309,6 +325,13 @@ public abstract class RenderRegionAddressHelper {
 		return REVERSE_INDEX_LOOKUP[cacheIndex];
 	}
 
+	/**
+	 * Index into a cache of {@link #BRICK_CACHE_SIZE} for the given cache index.
+	 */
+	public static int cacheIndexToBrickIndex(int cacheIndex) {
+		return BRICK_INDEX_LOOKUP[cacheIndex];
+	}
+
 	/**
 	 * Packs values in -1 to 1 range with 5 bit encoding
 	 * Reduces call overhead by passing xyz5 and packed
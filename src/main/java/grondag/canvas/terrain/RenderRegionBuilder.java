@@ -21,12 +21,17 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
 
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RenderRegionBuilder {
 	public final ChunkRenderExecutor executor = new ChunkRenderExecutor();
 	private final Queue<Runnable> uploadQueue = Queues.newConcurrentLinkedQueue();
+	// region invalidations merged into an already-pending rebuild
+	private final AtomicInteger mergedRebuildCount = new AtomicInteger();
 	// for use by render thread rebuilds
 	TerrainRenderContext mainThreadContext = new TerrainRenderContext();
+	// for splitting render thread rebuilds across threads
+	final RegionSubvolume[] mainThreadSubvolumes = RegionSubvolume.create();
 
 	public RenderRegionBuilder() {
 		// PERF: limit vertex collectors similarly, somehow
@@ -38,7 +43,11 @@ public class RenderRegionBuilder {
 	}
 
 	public String getDebugString() {
-		return String.format("not available");
+		return String.format("merged: %d", mergedRebuildCount.get());
+	}
+
+	void countMergedRebuild() {
+		mergedRebuildCount.incrementAndGet();
 	}
 
 	public boolean upload() {
@@ -58,8 +67,13 @@ public class RenderRegionBuilder {
 
 	public void reset() {
 		executor.clear();
+		mergedRebuildCount.set(0);
 		mainThreadContext.close();
 		mainThreadContext = new TerrainRenderContext();
+
+		for (final RegionSubvolume subvolume : mainThreadSubvolumes) {
+			subvolume.close();
+		}
 	}
 
 	public void scheduleUpload(Runnable task) {
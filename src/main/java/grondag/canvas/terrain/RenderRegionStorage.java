@@ -16,58 +16,231 @@
 
 package grondag.canvas.terrain;
 
+import grondag.canvas.light.LightSmoother;
+import grondag.canvas.render.CanvasFrustum;
 import grondag.canvas.render.CanvasWorldRenderer;
-import it.unimi.dsi.fastutil.Hash;
+import grondag.canvas.terrain.occlusion.TerrainOccluder;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3d;
 
+import java.util.Arrays;
 import java.util.function.Predicate;
 
 public class RenderRegionStorage {
-	private static final Predicate<BuiltRenderRegion> REGION_PRUNER = r -> {
-		// TODO: confirm not creating/removing due to mismatch in distances
-		if (!r.updateCameraDistance()) {
-			r.close();
-			return true;
-		} else {
-			return false;
-		}
-	};
-	private static final Predicate<RegionChunkReference> CHUNK_REF_PRUNER = RegionChunkReference::isEmpty;
+	// TODO: confirm not creating/removing due to mismatch in distances
+	// Pruned regions are closed by the map after removal
+	private static final Predicate<BuiltRenderRegion> REGION_PRUNER = r -> !r.updateCameraDistance();
+	private static final Predicate<RegionChunkReference> CHUNK_REF_PRUNER = RegionChunkReference::tryDispose;
+	private static final int NO_VERSION = -1;
 	// Hat tip to JellySquid for the suggestion of using a hashmap
-	// PERF: lock-free implementation
-	private final HackedLong2ObjectMap<BuiltRenderRegion> regionMap = new HackedLong2ObjectMap<>(8192, Hash.VERY_FAST_LOAD_FACTOR, r -> r.close());
-	private final HackedLong2ObjectMap<RegionChunkReference> chunkRefMap = new HackedLong2ObjectMap<>(2048, Hash.VERY_FAST_LOAD_FACTOR, r -> {
-	});
+	private final ConcurrentLong2ObjectMap<BuiltRenderRegion> regionMap = new ConcurrentLong2ObjectMap<>(8192, BuiltRenderRegion::close);
+	private final ConcurrentLong2ObjectMap<RegionChunkReference> chunkRefMap = new ConcurrentLong2ObjectMap<>(2048, this::releaseColumnSlot);
 	private final CanvasWorldRenderer cwr;
 	private final int regionVersion = -1;
 	private int positionVersion;
 
+	// Frustum data for chunk columns kept as parallel primitive arrays so the batch test in
+	// updateFrustum is a few tight loops instead of chasing region objects.
+	// Guarded by frustumLock except for result reads, which check version and bounds instead.
+	private final Object frustumLock = new Object();
+	private final IntArrayList freeColumnSlots = new IntArrayList();
+	private int columnSlotLimit = 0;
+	private int[] columnOriginX = new int[1024];
+	private int[] columnOriginZ = new int[1024];
+	private float[] columnCenterX = new float[1024];
+	private float[] columnCenterZ = new float[1024];
+	private int[] columnPlaneFlags = new int[1024];
+	private int[] columnVisibility = new int[1024];
+	private int[] columnVersion = new int[1024];
+	private int frustumVersion = NO_VERSION;
+
 	public RenderRegionStorage(CanvasWorldRenderer cwr) {
 		this.cwr = cwr;
 	}
 
+	/**
+	 * Returns a retained reference for the chunk column containing the given region.
+	 */
 	private RegionChunkReference chunkRef(long packedOriginPos) {
 		final long key = ChunkPos.toLong(BlockPos.unpackLongX(packedOriginPos) >> 4, BlockPos.unpackLongZ(packedOriginPos) >> 4);
-		return chunkRefMap.computeIfAbsent(key, k -> new RegionChunkReference(cwr.getWorld(), key));
+
+		while (true) {
+			final RegionChunkReference result = chunkRefMap.computeIfAbsent(key, k -> {
+				final RegionChunkReference ref = new RegionChunkReference(cwr.getWorld(), key);
+				ref.frustumSlot = allocateColumnSlot(key);
+				return ref;
+			});
+
+			// disposed by a concurrent prune - it will be gone from the map momentarily
+			if (result.retain()) {
+				return result;
+			}
+
+			Thread.yield();
+		}
+	}
+
+	private int allocateColumnSlot(long chunkKey) {
+		synchronized (frustumLock) {
+			final int slot = freeColumnSlots.isEmpty() ? columnSlotLimit++ : freeColumnSlots.popInt();
+
+			if (slot >= columnOriginX.length) {
+				growColumnArrays();
+			}
+
+			columnOriginX[slot] = ChunkPos.getPackedX(chunkKey) << 4;
+			columnOriginZ[slot] = ChunkPos.getPackedZ(chunkKey) << 4;
+			// not tested until next batch
+			columnVersion[slot] = NO_VERSION;
+			return slot;
+		}
+	}
+
+	private void releaseColumnSlot(RegionChunkReference chunkRef) {
+		synchronized (frustumLock) {
+			final int slot = chunkRef.frustumSlot;
+
+			if (slot >= 0) {
+				chunkRef.frustumSlot = -1;
+				columnVersion[slot] = NO_VERSION;
+				freeColumnSlots.add(slot);
+			}
+		}
+	}
+
+	private void growColumnArrays() {
+		final int size = columnOriginX.length * 2;
+		columnOriginX = Arrays.copyOf(columnOriginX, size);
+		columnOriginZ = Arrays.copyOf(columnOriginZ, size);
+		columnCenterX = new float[size];
+		columnCenterZ = new float[size];
+		columnPlaneFlags = new int[size];
+		columnVisibility = Arrays.copyOf(columnVisibility, size);
+		columnVersion = Arrays.copyOf(columnVersion, size);
+	}
+
+	/**
+	 * Frustum-tests every region in storage in one batch, unless already done for this view.
+	 * Results are used by {@link BuiltRenderRegion#isInFrustum(CanvasFrustum)}. Regions created
+	 * after the batch are tested individually.
+	 */
+	public void updateFrustum(CanvasFrustum frustum) {
+		synchronized (frustumLock) {
+			final int version = frustum.viewVersion();
+
+			if (version == frustumVersion) {
+				return;
+			}
+
+			final int limit = columnSlotLimit;
+			frustum.testRegionColumns(columnOriginX, columnOriginZ, limit, columnCenterX, columnCenterZ, columnPlaneFlags, columnVisibility);
+			// free slots are stamped also but nothing references them and they are reset when reused
+			Arrays.fill(columnVersion, 0, limit, version);
+			frustumVersion = version;
+		}
+	}
+
+	/**
+	 * Result of the last batch frustum test for the region at the given y origin in the column.
+	 *
+	 * @return 1 if visible, 0 if not, or -1 if the region was not part of the batch for the given view version
+	 */
+	int batchFrustumResult(RegionChunkReference chunkRef, int originY, int viewVersion) {
+		final int slot = chunkRef.frustumSlot;
+		// arrays may be replaced by growth on another thread but old ones remain valid for existing slots
+		final int[] versions = columnVersion;
+		final int[] visibility = columnVisibility;
+
+		if (slot < 0 || slot >= versions.length || slot >= visibility.length || versions[slot] != viewVersion) {
+			return -1;
+		}
+
+		return (visibility[slot] >> (originY >> 4)) & 1;
 	}
 
 	public void clear() {
 		regionMap.clear();
 		chunkRefMap.clear();
+		LightSmoother.clearCache();
+
+		synchronized (frustumLock) {
+			// all slots were released by the map
+			freeColumnSlots.clear();
+			columnSlotLimit = 0;
+			frustumVersion = NO_VERSION;
+		}
 	}
 
 	public void scheduleRebuild(int x, int y, int z, boolean urgent) {
+		LightSmoother.invalidate(x, y, z);
+
 		if ((y & 0xFFFFFF00) == 0) {
 			final BuiltRenderRegion region = regionMap.get(BlockPos.asLong(x & 0xFFFFFFF0, y & 0xFFFFFFF0, z & 0xFFFFFFF0));
 
 			if (region != null) {
-				region.markForBuild(urgent);
+				region.markDirty(urgent);
+			}
+		}
+	}
+
+	/**
+	 * Schedules rebuild of regions affected by a change to the block at the given position.
+	 * Neighbors within one block are included because face culling and smooth lighting
+	 * of adjacent blocks depend on the changed block.
+	 */
+	public void scheduleBlockRebuild(int x, int y, int z, boolean urgent) {
+		scheduleBoxRebuild(x, y, z, x, y, z, urgent);
+	}
+
+	/**
+	 * Like {@link #scheduleBlockRebuild(int, int, int, boolean)} for all blocks
+	 * in the given inclusive block bounds.
+	 */
+	public void scheduleBoxRebuild(int x0, int y0, int z0, int x1, int y1, int z1, boolean urgent) {
+		for (int rx = x0 & 0xFFFFFFF0; rx <= x1; rx += 16) {
+			for (int ry = y0 & 0xFFFFFFF0; ry <= y1; ry += 16) {
+				for (int rz = z0 & 0xFFFFFFF0; rz <= z1; rz += 16) {
+					LightSmoother.invalidate(rx, ry, rz);
+				}
+			}
+		}
+
+		final int minX = x0 - 1;
+		final int minY = y0 - 1;
+		final int minZ = z0 - 1;
+		final int maxX = x1 + 1;
+		final int maxY = y1 + 1;
+		final int maxZ = z1 + 1;
+
+		for (int rx = minX & 0xFFFFFFF0; rx <= maxX; rx += 16) {
+			for (int ry = minY & 0xFFFFFFF0; ry <= maxY; ry += 16) {
+				if ((ry & 0xFFFFFF00) != 0) {
+					continue;
+				}
+
+				for (int rz = minZ & 0xFFFFFFF0; rz <= maxZ; rz += 16) {
+					final BuiltRenderRegion region = regionMap.get(BlockPos.asLong(rx, ry, rz));
+
+					if (region != null) {
+						region.markDirty(urgent, dirtySubcubes(rx, ry, rz, x0, y0, z0, x1, y1, z1));
+					}
+				}
 			}
 		}
 	}
 
+	/**
+	 * Sub-cubes of the region at the given origin that must be re-tessellated after
+	 * blocks in the inclusive bounds change, including the one-block neighbor margin.
+	 */
+	public static long dirtySubcubes(int originX, int originY, int originZ, int x0, int y0, int z0, int x1, int y1, int z1) {
+		return RegionMeshState.subcubeMask(
+				Math.max(x0 - 1 - originX, 0), Math.max(y0 - 1 - originY, 0), Math.max(z0 - 1 - originZ, 0),
+				Math.min(x1 + 1 - originX, 15), Math.min(y1 + 1 - originY, 15), Math.min(z1 + 1 - originZ, 15));
+	}
+
 	/**
 	 * Called each frame, but only updates when player has moved more than 1 block.
 	 * Uses position version to detect the movement.
@@ -81,6 +254,9 @@ public class RenderRegionStorage {
 
 		regionMap.prune(REGION_PRUNER);
 		chunkRefMap.prune(CHUNK_REF_PRUNER);
+
+		// queued rebuilds were prioritized using old distances
+		cwr.regionBuilder().executor.reprioritize();
 	}
 
 	public int regionCount() {
@@ -115,8 +291,30 @@ public class RenderRegionStorage {
 		return regionMap.get(BlockPos.asLong(x & 0xFFFFFFF0, y & 0xFFFFFFF0, z & 0xFFFFFFF0));
 	}
 
-	public boolean wasSeen(int x, int y, int z) {
-		final BuiltRenderRegion r = getRegionIfExists(x, y, z);
-		return r != null && r.wasRecentlySeen();
+	/**
+	 * True if any region octant overlapped by the inclusive block bounds was visible
+	 * in a recent terrain iteration.
+	 */
+	public boolean wasBoxSeen(int x0, int y0, int z0, int x1, int y1, int z1) {
+		final int ox1 = x1 >> 3;
+		final int oy1 = y1 >> 3;
+		final int oz1 = z1 >> 3;
+
+		for (int oy = y0 >> 3; oy <= oy1; ++oy) {
+			for (int oz = z0 >> 3; oz <= oz1; ++oz) {
+				for (int ox = x0 >> 3; ox <= ox1; ++ox) {
+					final int x = ox << 3;
+					final int y = oy << 3;
+					final int z = oz << 3;
+					final BuiltRenderRegion r = getRegionIfExists(x, y, z);
+
+					if (r != null && r.wasOctantRecentlySeen(TerrainOccluder.octantBit(x, y, z))) {
+						return true;
+					}
+				}
+			}
+		}
+
+		return false;
 	}
 }
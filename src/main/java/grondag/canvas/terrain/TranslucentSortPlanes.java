@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.terrain;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Distinct quad extents on each axis for translucent quads in a region when every quad is axis-aligned.
+ * Two disjoint axis-aligned quads are always separated by a slab between extents on some axis.
+ * Which one must be drawn first depends only on the camera's side of that slab, and from inside
+ * the slab no ray can hit both.  Visible order can therefore only change when the camera crosses
+ * an extent, so a resort is needed only when the camera moves to a different cell of the grid they form.
+ *
+ * <p>The quad's own plane is not enough: a horizontal and a vertical quad that are
+ * separated along the third axis swap order without the camera crossing either plane.
+ */
+public final class TranslucentSortPlanes {
+	/** Cell value that never matches a computed cell. */
+	static final int NO_CELL = -1;
+
+	private static final float EPSILON = 1e-4f;
+
+	/** Limits cell index to 10 bits per axis. */
+	private static final int MAX_PLANES = 1023;
+
+	private final float[] xPlanes;
+	private final float[] yPlanes;
+	private final float[] zPlanes;
+
+	private TranslucentSortPlanes(float[] xPlanes, float[] yPlanes, float[] zPlanes) {
+		this.xPlanes = xPlanes;
+		this.yPlanes = yPlanes;
+		this.zPlanes = zPlanes;
+	}
+
+	/**
+	 * Returns null if any quad is not axis-aligned or there are too many planes,
+	 * in which case regions must resort whenever the camera moves.
+	 */
+	public static @Nullable TranslucentSortPlanes of(int[] data, int vertexIntStride) {
+		final int quadIntStride = vertexIntStride * 4;
+		final int quadCount = data.length / quadIntStride;
+
+		if (quadCount == 0) {
+			return null;
+		}
+
+		// min and max of each quad on each axis
+		final float[] x = new float[quadCount * 2];
+		final float[] y = new float[quadCount * 2];
+		final float[] z = new float[quadCount * 2];
+
+		for (int q = 0; q < quadCount; ++q) {
+			final int base = q * quadIntStride;
+
+			if (!isPlanar(data, base, vertexIntStride, 0) && !isPlanar(data, base, vertexIntStride, 1) && !isPlanar(data, base, vertexIntStride, 2)) {
+				return null;
+			}
+
+			extent(data, base, vertexIntStride, 0, x, q);
+			extent(data, base, vertexIntStride, 1, y, q);
+			extent(data, base, vertexIntStride, 2, z, q);
+		}
+
+		final float[] xPlanes = distinct(x, quadCount * 2);
+		final float[] yPlanes = distinct(y, quadCount * 2);
+		final float[] zPlanes = distinct(z, quadCount * 2);
+
+		if (xPlanes.length > MAX_PLANES || yPlanes.length > MAX_PLANES || zPlanes.length > MAX_PLANES) {
+			return null;
+		}
+
+		return new TranslucentSortPlanes(xPlanes, yPlanes, zPlanes);
+	}
+
+	private static boolean isPlanar(int[] data, int base, int vertexIntStride, int axis) {
+		final float c = Float.intBitsToFloat(data[base + axis]);
+
+		for (int v = 1; v < 4; ++v) {
+			if (Math.abs(Float.intBitsToFloat(data[base + v * vertexIntStride + axis]) - c) > EPSILON) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static void extent(int[] data, int base, int vertexIntStride, int axis, float[] out, int quadIndex) {
+		float min = Float.intBitsToFloat(data[base + axis]);
+		float max = min;
+
+		for (int v = 1; v < 4; ++v) {
+			final float c = Float.intBitsToFloat(data[base + v * vertexIntStride + axis]);
+
+			if (c < min) {
+				min = c;
+			} else if (c > max) {
+				max = c;
+			}
+		}
+
+		out[quadIndex * 2] = min;
+		out[quadIndex * 2 + 1] = max;
+	}
+
+	private static float[] distinct(float[] values, int count) {
+		if (count == 0) {
+			return new float[0];
+		}
+
+		Arrays.sort(values, 0, count);
+		int n = 1;
+
+		for (int i = 1; i < count; ++i) {
+			if (values[i] - values[n - 1] > EPSILON) {
+				values[n++] = values[i];
+			}
+		}
+
+		return Arrays.copyOf(values, n);
+	}
+
+	/**
+	 * Identifies the cell of the plane grid containing the given point,
+	 * in the same coordinate space as the quad vertices.
+	 */
+	public int cell(float x, float y, float z) {
+		return planesBelow(xPlanes, x) | (planesBelow(yPlanes, y) << 10) | (planesBelow(zPlanes, z) << 20);
+	}
+
+	private static int planesBelow(float[] planes, float value) {
+		int low = 0;
+		int high = planes.length;
+
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+
+			if (planes[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+}
@@ -76,6 +76,17 @@ public class Constants {
 	static final int CLIP_MASK = ~(MathHelper.smallestEncompassingPowerOfTwo(CLIP_RANGE) - 1);
 	static final int TILE_COUNT = TILE_WIDTH * TILE_HEIGHT;
 	static final long[] EMPTY_BITS = new long[TILE_COUNT];
+
+	// Coarse level: each word summarizes an 8x8 block of tiles (64x64 pixels), one bit per tile.
+	// Low six bits of tile index are position within the block, so coarse index is tile index >> 6.
+	static final int COARSE_INDEX_SHIFT = TILE_AXIS_SHIFT * 2;
+	static final int COARSE_PIXEL_SHIFT = TILE_AXIS_SHIFT * 2;
+	static final int LOW_TILE_INDEX_MASK = (1 << COARSE_INDEX_SHIFT) - 1;
+	static final int COARSE_WIDTH = TILE_WIDTH >> TILE_AXIS_SHIFT;
+	static final int COARSE_WIDTH_BITS = Integer.bitCount(COARSE_WIDTH - 1);
+	static final int COARSE_HEIGHT = TILE_HEIGHT >> TILE_AXIS_SHIFT;
+	static final int COARSE_COUNT = COARSE_WIDTH * COARSE_HEIGHT;
+	static final long[] EMPTY_COARSE_BITS = new long[COARSE_COUNT];
 	static final int CAMERA_PRECISION_BITS = 12;
 	static final int CAMERA_PRECISION_UNITY = 1 << CAMERA_PRECISION_BITS;
 	static final int CAMERA_PRECISION_CHUNK_MAX = 18 * CAMERA_PRECISION_UNITY;
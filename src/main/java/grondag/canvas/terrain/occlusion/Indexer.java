@@ -36,6 +36,10 @@ abstract class Indexer {
 		return ((tileY & TILE_AXIS_MASK) << TILE_ADDRESS_SHIFT_Y) | ((tileX & TILE_AXIS_MASK) << TILE_ADDRESS_SHIFT_X) | ((tileY & TILE_PIXEL_INDEX_MASK) << TILE_AXIS_SHIFT) | (tileX & TILE_PIXEL_INDEX_MASK);
 	}
 
+	static int coarseIndexFromPixelXY(int x, int y) {
+		return ((y >>> COARSE_PIXEL_SHIFT) << COARSE_WIDTH_BITS) | (x >>> COARSE_PIXEL_SHIFT);
+	}
+
 	static int lowIndexFromPixelXY(int x, int y) {
 		return tileIndex(x >>> TILE_AXIS_SHIFT, y >>> TILE_AXIS_SHIFT);
 	}
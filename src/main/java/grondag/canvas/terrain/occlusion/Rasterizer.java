@@ -33,6 +33,19 @@ class Rasterizer {
 	final Matrix4L mvpMatrix = new Matrix4L();
 	final int[] data = new int[DATA_LENGTH];
 	final long[] tiles = new long[TILE_COUNT];
+
+	/**
+	 * Coarse summary of {@link #tiles}. One word per 8x8 block of tiles, with
+	 * a bit set for each tile in the block that is fully occluded. A word
+	 * value of -1L means the entire 64x64 pixel block is occluded.
+	 */
+	final long[] fullTiles = new long[COARSE_COUNT];
+
+	/**
+	 * Number of coarse blocks that are fully occluded.  When this
+	 * equals {@link Constants#COARSE_COUNT} nothing can be visible.
+	 */
+	int fullCoarseCount;
 	private final EventFiller[] EVENT_FILLERS = new EventFiller[0x1000];
 	long nextRasterOutputTime;
 
@@ -481,6 +494,22 @@ class Rasterizer {
 		mvpMatrix.copyFrom(source.mvpMatrix);
 		System.arraycopy(source.data, 0, data, 0, DATA_LENGTH);
 		System.arraycopy(source.tiles, 0, tiles, 0, TILE_COUNT);
+		System.arraycopy(source.fullTiles, 0, fullTiles, 0, COARSE_COUNT);
+		fullCoarseCount = source.fullCoarseCount;
+	}
+
+	final void clear() {
+		System.arraycopy(EMPTY_BITS, 0, tiles, 0, TILE_COUNT);
+		System.arraycopy(EMPTY_COARSE_BITS, 0, fullTiles, 0, COARSE_COUNT);
+		fullCoarseCount = 0;
+	}
+
+	/**
+	 * True when every pixel in the raster is occluded. Allows callers to skip
+	 * vertex setup entirely once the scene is closed off.
+	 */
+	final boolean isFullyOccluded() {
+		return fullCoarseCount == COARSE_COUNT;
 	}
 
 	final void drawQuad(int v0, int v1, int v2, int v3) {
@@ -495,9 +524,41 @@ class Rasterizer {
 			return;
 		}
 
+		// nothing to do if already fully occluded
+		if (isCoarseBoundsOccluded()) {
+			return;
+		}
+
 		drawQuad();
 	}
 
+	/**
+	 * Checks coarse blocks overlapping the pixel bounds of the current quad.
+	 * Requires bounds to have been prepared.
+	 *
+	 * @return true if every 64x64 block touched by quad bounds is fully occluded
+	 */
+	boolean isCoarseBoundsOccluded() {
+		final int[] data = this.data;
+		final long[] fullTiles = this.fullTiles;
+		final int x0 = data[IDX_MIN_PIX_X] >> COARSE_PIXEL_SHIFT;
+		final int x1 = data[IDX_MAX_PIX_X] >> COARSE_PIXEL_SHIFT;
+		final int y0 = data[IDX_MIN_PIX_Y] >> COARSE_PIXEL_SHIFT;
+		final int y1 = data[IDX_MAX_PIX_Y] >> COARSE_PIXEL_SHIFT;
+
+		for (int y = y0; y <= y1; y++) {
+			final int rowIndex = y << COARSE_WIDTH_BITS;
+
+			for (int x = x0; x <= x1; x++) {
+				if (fullTiles[rowIndex | x] != -1L) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
 	boolean testQuad(int v0, int v1, int v2, int v3) {
 		final int boundsResult = prepareBounds(v0, v1, v2, v3);
 
@@ -510,7 +571,7 @@ class Rasterizer {
 			final int py = data[IDX_MIN_PIX_Y];
 			return px >= 0 && py >= 0 && px < PIXEL_WIDTH && py < PIXEL_HEIGHT && testPixel(px, py);
 		} else {
-			return testQuad();
+			return !isCoarseBoundsOccluded() && testQuad();
 		}
 	}
 
@@ -612,6 +673,20 @@ class Rasterizer {
 		if (word != -1L) {
 			word |= computeTileCoverage();
 			tiles[tileIndex] = word;
+
+			if (word == -1L) {
+				markTileFull(tileIndex);
+			}
+		}
+	}
+
+	private void markTileFull(int tileIndex) {
+		final int coarseIndex = tileIndex >> COARSE_INDEX_SHIFT;
+		final long coarseWord = fullTiles[coarseIndex] | (1L << (tileIndex & LOW_TILE_INDEX_MASK));
+		fullTiles[coarseIndex] = coarseWord;
+
+		if (coarseWord == -1L) {
+			++fullCoarseCount;
 		}
 	}
 
@@ -2209,11 +2284,25 @@ class Rasterizer {
 	}
 
 	boolean testPixel(int x, int y) {
+		if (fullTiles[Indexer.coarseIndexFromPixelXY(x, y)] == -1L) {
+			return false;
+		}
+
 		return (tiles[Indexer.lowIndexFromPixelXY(x, y)] & (1L << (Indexer.pixelIndex(x, y)))) == 0;
 	}
 
 	void drawPixel(int x, int y) {
-		tiles[Indexer.lowIndexFromPixelXY(x, y)] |= (1L << (Indexer.pixelIndex(x, y)));
+		final int tileIndex = Indexer.lowIndexFromPixelXY(x, y);
+		final long word = tiles[tileIndex];
+
+		if (word != -1L) {
+			final long newWord = word | (1L << (Indexer.pixelIndex(x, y)));
+			tiles[tileIndex] = newWord;
+
+			if (newWord == -1L) {
+				markTileFull(tileIndex);
+			}
+		}
 	}
 
 	@FunctionalInterface
@@ -16,6 +16,10 @@
 
 package grondag.canvas.terrain.occlusion;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
@@ -39,6 +43,24 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 	public static final int READY = 1;
 	public static final int RUNNING = 2;
 	public static final int COMPLETE = 3;
+
+	/**
+	 * Levels smaller than this are filtered inline - not worth the fork/join overhead.
+	 */
+	private static final int PARALLEL_LEVEL_THRESHOLD = 512;
+
+	/**
+	 * Number of regions checked by a single leaf task during parallel filtering.
+	 */
+	private static final int PARALLEL_SPLIT_SIZE = 128;
+
+	private static final ForkJoinPool VISIBILITY_POOL = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), pool -> {
+		final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+		thread.setName("Canvas Visibility Thread - " + thread.getPoolIndex());
+		thread.setDaemon(true);
+		return thread;
+	}, null, false);
+
 	public final SimpleUnorderedArrayList<BuiltRenderRegion> updateRegions = new SimpleUnorderedArrayList<>();
 	public final BuiltRenderRegion[] visibleRegions = new BuiltRenderRegion[CanvasWorldRenderer.MAX_REGION_COUNT];
 	private final SimpleUnorderedArrayList<BuiltRenderRegion> regionListA = new SimpleUnorderedArrayList<>();
@@ -54,6 +76,10 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 	private boolean chunkCullingEnabled = true;
 	private volatile boolean cancelled = false;
 
+	// scratch state for parallel level filtering
+	private BuiltRenderRegion[] levelRegions = new BuiltRenderRegion[4096];
+	private boolean[] levelResults = new boolean[4096];
+
 	public TerrainIterator(CanvasWorldRenderer cwr) {
 		renderRegionStorage = cwr.regionStorage();
 		terrainOccluder = cwr.terrainOccluder;
@@ -86,6 +112,9 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 		state.set(RUNNING);
 
 		final boolean chunkCullingEnabled = this.chunkCullingEnabled;
+		final boolean parallel = Configurator.parallelTerrainIteration;
+		final boolean temporalOcclusion = Configurator.temporalOcclusion;
+		final boolean cullEntities = chunkCullingEnabled && Configurator.cullEntityRender;
 		final int renderDistance = this.renderDistance;
 		final CanvasFrustum frustum = this.frustum;
 		final RenderRegionStorage regionStorage = renderRegionStorage;
@@ -101,6 +130,9 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 		nextLevel.clear();
 
 		BuiltRenderRegion.advanceFrameIndex();
+		// one pass over packed column data instead of testing regions as they are reached
+		regionStorage.updateFrustum(frustum);
+
 		if (cameraRegion == null) {
 			// prime visible when above or below world and camera region is null
 			final int y = cameraBlockPos.getY() > 0 ? 248 : 8;
@@ -134,10 +166,13 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 			cameraRegion.occluderVersion = occluderVersion;
 			cameraRegion.enqueueUnvistedNeighbors(currentLevel);
 			cameraRegion.occluderResult = true;
+			cameraRegion.occluderOctants = TerrainOccluder.ALL_OCTANTS;
 		}
 
 		assert !currentLevel.isEmpty();
 
+		// true when all regions in current level already passed frustum and build checks
+		boolean isLevelFiltered = false;
 
 		// PERF: look for ways to improve branch prediction
 		while (!cancelled) {
@@ -149,20 +184,29 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 					currentLevel = nextLevel;
 					nextLevel = swapLevel;
 					nextLevel.clear();
+
+					isLevelFiltered = parallel && currentLevel.size() >= PARALLEL_LEVEL_THRESHOLD;
+
+					if (isLevelFiltered) {
+						filterLevel(currentLevel);
+						continue;
+					}
 				}
 			}
 
 			final BuiltRenderRegion builtRegion = currentLevel.removeLast();
 
-			// don't visit if not in frustum
-			if (!builtRegion.isInFrustum(frustum)) {
-				continue;
-			}
+			if (!isLevelFiltered) {
+				// don't visit if not in frustum
+				if (!builtRegion.isInFrustum(frustum)) {
+					continue;
+				}
 
-			// don't visit if region is outside near distance and doesn't have all 4 neighbors loaded
-			// also checks for outside of render distance
-			if (!builtRegion.shouldBuild()) {
-				continue;
+				// don't visit if region is outside near distance and doesn't have all 4 neighbors loaded
+				// also checks for outside of render distance
+				if (!builtRegion.shouldBuild()) {
+					continue;
+				}
 			}
 
 			final RegionData regionData = builtRegion.getBuildData();
@@ -188,9 +232,15 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 					} else {
 						builtRegion.occluderVersion = occluderVersion;
 
-						if (!chunkCullingEnabled || builtRegion.isNear() || terrainOccluder.isEmptyRegionVisible(builtRegion.getOrigin())) {
+						if (!chunkCullingEnabled || builtRegion.isNear()) {
+							builtRegion.enqueueUnvistedNeighbors(nextLevel);
+							builtRegion.occluderResult = true;
+							builtRegion.occluderOctants = TerrainOccluder.ALL_OCTANTS;
+						} else if (terrainOccluder.isEmptyRegionVisible(builtRegion.getOrigin())) {
 							builtRegion.enqueueUnvistedNeighbors(nextLevel);
 							builtRegion.occluderResult = true;
+							// nothing drawn for empty regions so the raster is still in search order
+							builtRegion.occluderOctants = builtRegion.mayHaveEntities() ? terrainOccluder.visibleOctants() : TerrainOccluder.ALL_OCTANTS;
 						} else {
 							builtRegion.occluderResult = false;
 						}
@@ -215,6 +265,7 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 
 				builtRegion.occluderVersion = occluderVersion;
 				builtRegion.occluderResult = true;
+				builtRegion.occluderOctants = TerrainOccluder.ALL_OCTANTS;
 			} else if (builtRegion.occluderVersion == occluderVersion) {
 				// reuse prior test results
 				if (builtRegion.occluderResult) {
@@ -227,6 +278,15 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 						terrainOccluder.occlude(visData);
 					}
 				}
+			} else if (temporalOcclusion && terrainOccluder.canReuseVisibleResult(builtRegion)) {
+				// visible recently and barely moved on screen - draw occluders in search order but skip the test
+				builtRegion.enqueueUnvistedNeighbors(nextLevel);
+				visibleRegions[visibleRegionCount++] = builtRegion;
+				builtRegion.occluderVersion = occluderVersion;
+				builtRegion.occluderResult = true;
+				builtRegion.occluderOctants = TerrainOccluder.ALL_OCTANTS;
+				terrainOccluder.prepareRegion(builtRegion.getOrigin(), builtRegion.occlusionRange);
+				terrainOccluder.occlude(visData);
 			} else {
 				terrainOccluder.prepareRegion(builtRegion.getOrigin(), builtRegion.occlusionRange);
 
@@ -235,10 +295,16 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 					visibleRegions[visibleRegionCount++] = builtRegion;
 					builtRegion.occluderVersion = occluderVersion;
 					builtRegion.occluderResult = true;
+					terrainOccluder.recordTestResult(builtRegion, true);
+
+					// entity octants must be tested before this region's own occluders are drawn
+					builtRegion.occluderOctants = cullEntities && builtRegion.mayHaveEntities() ? terrainOccluder.visibleOctants() : TerrainOccluder.ALL_OCTANTS;
 
 					// these must always be drawn - will be additive if view hasn't changed
 					terrainOccluder.occlude(visData);
 				} else {
+					terrainOccluder.recordTestResult(builtRegion, false);
+
 					// note that we don't update occluder version in this case
 					// casues some chunks not to render if set - reason doesn't seem clear but
 					// didn't actually contribute any information to occluder and should not be tied to it
@@ -260,4 +326,80 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 			}
 		}
 	}
+
+	/**
+	 * Runs frustum and build checks for every region in the level in parallel
+	 * and removes those that fail. Order of remaining regions is preserved so that
+	 * occluder draws and tests still happen in the same sequence as a serial search.
+	 * The occluder itself is not touched here because raster results depend on draw order.
+	 */
+	private void filterLevel(SimpleUnorderedArrayList<BuiltRenderRegion> level) {
+		final int size = level.size();
+
+		if (levelRegions.length < size) {
+			final int newSize = Math.max(size, levelRegions.length * 2);
+			levelRegions = new BuiltRenderRegion[newSize];
+			levelResults = new boolean[newSize];
+		}
+
+		final BuiltRenderRegion[] regions = levelRegions;
+		final boolean[] results = levelResults;
+
+		for (int i = 0; i < size; ++i) {
+			regions[i] = level.get(i);
+		}
+
+		VISIBILITY_POOL.invoke(new LevelFilter(regions, results, frustum, 0, size));
+
+		level.clear();
+
+		for (int i = 0; i < size; ++i) {
+			if (results[i]) {
+				level.add(regions[i]);
+			}
+		}
+
+		Arrays.fill(regions, 0, size, null);
+	}
+
+	@SuppressWarnings("serial")
+	private class LevelFilter extends RecursiveAction {
+		private final BuiltRenderRegion[] regions;
+		private final boolean[] results;
+		private final CanvasFrustum frustum;
+		private final int start;
+		private final int end;
+
+		LevelFilter(BuiltRenderRegion[] regions, boolean[] results, CanvasFrustum frustum, int start, int end) {
+			this.regions = regions;
+			this.results = results;
+			this.frustum = frustum;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > PARALLEL_SPLIT_SIZE) {
+				final int mid = (start + end) >>> 1;
+				invokeAll(new LevelFilter(regions, results, frustum, start, mid), new LevelFilter(regions, results, frustum, mid, end));
+			} else {
+				final BuiltRenderRegion[] regions = this.regions;
+				final boolean[] results = this.results;
+				final CanvasFrustum frustum = this.frustum;
+
+				for (int i = start; i < end; ++i) {
+					// no point doing work that will be discarded
+					if (cancelled) {
+						results[i] = false;
+						continue;
+					}
+
+					final BuiltRenderRegion region = regions[i];
+					// same checks as serial search: frustum, then near distance/neighbors loaded
+					results[i] = region.isInFrustum(frustum) && region.shouldBuild();
+				}
+			}
+		}
+	}
 }
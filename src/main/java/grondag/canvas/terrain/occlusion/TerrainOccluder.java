@@ -34,10 +34,21 @@ import java.util.concurrent.atomic.AtomicInteger;
 import static grondag.canvas.terrain.occlusion.Constants.*;
 
 public class TerrainOccluder {
+	/**
+	 * Consecutive visible results needed before a region can skip tests in coherent mode.
+	 */
+	private static final int STABLE_VISIBLE_TESTS = 4;
+	public static final int ALL_OCTANTS = 0xFF;
+
 	private final Matrix4L baseMvpMatrix = new Matrix4L();
 
 	private final Rasterizer raster = new Rasterizer();
 	private final AtomicInteger occluderVersion = new AtomicInteger();
+	/**
+	 * Occluder version created by the most recent invalidation. Region test results
+	 * from before this version reflect occluders that may no longer exist.
+	 */
+	private volatile int invalidatedVersion = 0;
 	private final BoxTest[] boxTests = new BoxTest[128];
 	private final BoxDraw[] boxDraws = new BoxDraw[128];
 	private long viewX;
@@ -629,6 +640,7 @@ public class TerrainOccluder {
 		regionVersion = source.regionVersion;
 
 		occluderVersion.set(source.occluderVersion.get());
+		invalidatedVersion = source.invalidatedVersion;
 
 		forceRedraw = source.forceRedraw;
 		needsRedraw = source.needsRedraw;
@@ -649,6 +661,7 @@ public class TerrainOccluder {
 	 */
 	public void invalidate(int invalidVersion) {
 		if (occluderVersion.compareAndSet(invalidVersion, invalidVersion + 1)) {
+			invalidatedVersion = invalidVersion + 1;
 			forceRedraw = true;
 		}
 	}
@@ -657,7 +670,7 @@ public class TerrainOccluder {
 	 * Force update to new version
 	 */
 	public void invalidate() {
-		occluderVersion.incrementAndGet();
+		invalidatedVersion = occluderVersion.incrementAndGet();
 		forceRedraw = true;
 	}
 
@@ -745,7 +758,7 @@ public class TerrainOccluder {
 			this.viewVersion = viewVersion;
 			this.positionVersion = positionVersion;
 			this.regionVersion = regionVersion;
-			System.arraycopy(EMPTY_BITS, 0, raster.tiles, 0, TILE_COUNT);
+			raster.clear();
 			forceRedraw = false;
 			needsRedraw = true;
 		} else if (this.positionVersion != positionVersion || this.regionVersion != regionVersion) {
@@ -753,11 +766,11 @@ public class TerrainOccluder {
 			this.viewVersion = viewVersion;
 			this.positionVersion = positionVersion;
 			this.regionVersion = regionVersion;
-			System.arraycopy(EMPTY_BITS, 0, raster.tiles, 0, TILE_COUNT);
+			raster.clear();
 			needsRedraw = true;
 		} else if (this.viewVersion != viewVersion) {
 			this.viewVersion = viewVersion;
-			System.arraycopy(EMPTY_BITS, 0, raster.tiles, 0, TILE_COUNT);
+			raster.clear();
 			needsRedraw = true;
 		} else {
 			needsRedraw = false;
@@ -775,13 +788,21 @@ public class TerrainOccluder {
 	 * plane with known facing to camera position.
 	 */
 	public boolean isBoxVisible(int packedBox) {
-		final int x0 = PackedBox.x0(packedBox) - 1;
-		final int y0 = PackedBox.y0(packedBox) - 1;
-		final int z0 = PackedBox.z0(packedBox) - 1;
-		final int x1 = PackedBox.x1(packedBox) + 1;
-		final int y1 = PackedBox.y1(packedBox) + 1;
-		final int z1 = PackedBox.z1(packedBox) + 1;
+		// coarse reject - nothing behind a closed scene can be seen
+		if (raster.isFullyOccluded()) {
+			return false;
+		}
 
+		return isBoxVisible(PackedBox.x0(packedBox) - 1, PackedBox.y0(packedBox) - 1, PackedBox.z0(packedBox) - 1,
+				PackedBox.x1(packedBox) + 1, PackedBox.y1(packedBox) + 1, PackedBox.z1(packedBox) + 1);
+	}
+
+	/**
+	 * Tests a box in block coordinates relative to the origin passed to {@link #prepareRegion(BlockPos, int)}.
+	 * Bounds are not expanded and may extend past the region.  Coverage-only, so the result is meaningful
+	 * only when everything drawn so far is nearer than the box.
+	 */
+	public boolean isBoxVisible(int x0, int y0, int z0, int x1, int y1, int z1) {
 		final int offsetX = this.offsetX;
 		final int offsetY = this.offsetY;
 		final int offsetZ = this.offsetZ;
@@ -810,6 +831,101 @@ public class TerrainOccluder {
 		return boxTests[outcome].apply(x0, y0, z0, x1, y1, z1);
 	}
 
+	/**
+	 * True if the last raster test of a region can stand in for a new one after the camera moved.
+	 * Only visible results are reused because that is conservative: the region still draws its
+	 * occluders in search order and at worst a hidden region is drawn.  Requires several visible
+	 * results in a row, no invalidation since the last test, and camera movement since then that
+	 * is small relative to region distance so the screen footprint has barely changed.
+	 */
+	public boolean canReuseVisibleResult(BuiltRenderRegion region) {
+		if (region.occluderVisibleCount < STABLE_VISIBLE_TESTS || region.occluderTestVersion < invalidatedVersion) {
+			return false;
+		}
+
+		// double because teleports can overflow squared fixed-precision distance
+		final double dx = (double) (viewX - region.occluderTestViewX) / CAMERA_PRECISION_UNITY;
+		final double dy = (double) (viewY - region.occluderTestViewY) / CAMERA_PRECISION_UNITY;
+		final double dz = (double) (viewZ - region.occluderTestViewZ) / CAMERA_PRECISION_UNITY;
+
+		// moved less than 1/32 of distance - under two degrees of parallax
+		return (dx * dx + dy * dy + dz * dz) * 1024 < region.squaredCameraDistance();
+	}
+
+	/**
+	 * Call after testing a region against the raster to track result stability.
+	 */
+	public void recordTestResult(BuiltRenderRegion region, boolean isVisible) {
+		if (isVisible) {
+			if (region.occluderVisibleCount < STABLE_VISIBLE_TESTS) {
+				++region.occluderVisibleCount;
+			}
+		} else {
+			region.occluderVisibleCount = 0;
+		}
+
+		region.occluderTestVersion = occluderVersion.get();
+		region.occluderTestViewX = viewX;
+		region.occluderTestViewY = viewY;
+		region.occluderTestViewZ = viewZ;
+	}
+
+	/**
+	 * Tests the eight 8-block octants of the current region and returns a mask of those visible,
+	 * indexed as in {@link #octantBit(int, int, int)}.  Call after {@link #prepareRegion(BlockPos, int)}
+	 * and before the region draws its own occluders.  The raster has no depth, so octant results are
+	 * only valid at the same point in search order as the region test itself.
+	 */
+	public int visibleOctants() {
+		if (raster.isFullyOccluded()) {
+			return 0;
+		}
+
+		int result = 0;
+
+		for (int i = 0; i < 8; ++i) {
+			final int x0 = (i & 1) << 3;
+			final int y0 = (i & 2) << 2;
+			final int z0 = (i & 4) << 1;
+
+			if (isBoxVisible(x0 - 1, y0 - 1, z0 - 1, x0 + 9, y0 + 9, z0 + 9)) {
+				result |= 1 << i;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Octant mask bit for a block position.  Only the low four bits of each coordinate are used.
+	 */
+	public static int octantBit(int x, int y, int z) {
+		return 1 << (((x >> 3) & 1) | ((y >> 2) & 2) | ((z >> 1) & 4));
+	}
+
+	/**
+	 * Mask of octants overlapped by inclusive block bounds that lie within a single region.
+	 */
+	public static int octantMask(int x0, int y0, int z0, int x1, int y1, int z1) {
+		final int ox0 = (x0 >> 3) & 1;
+		final int ox1 = (x1 >> 3) & 1;
+		final int oy0 = (y0 >> 3) & 1;
+		final int oy1 = (y1 >> 3) & 1;
+		final int oz0 = (z0 >> 3) & 1;
+		final int oz1 = (z1 >> 3) & 1;
+		int result = 0;
+
+		for (int y = oy0; y <= oy1; ++y) {
+			for (int z = oz0; z <= oz1; ++z) {
+				for (int x = ox0; x <= ox1; ++x) {
+					result |= 1 << (x | (y << 1) | (z << 2));
+				}
+			}
+		}
+
+		return result;
+	}
+
 	public boolean isEmptyRegionVisible(BlockPos origin) {
 		prepareRegion(origin, 0);
 		return isBoxVisible(PackedBox.FULL_BOX);
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.terrain.occlusion.region;
+
+import static grondag.canvas.terrain.RenderRegionAddressHelper.INTERIOR_CACHE_WORDS;
+
+/**
+ * Finds interior positions visible from outside the region by flood-filling open
+ * space from surface positions that have an open neighbor outside the region.
+ *
+ * <p>Works on 64 positions at a time. Each word holds x 0-15 for four y values,
+ * four words make a z slice, so neighbors are found with shifts and masks instead
+ * of a per-position queue. Result matches a 6-way flood fill where every position
+ * adjacent to reachable open space (open or closed) is also marked visible.
+ */
+public class ExteriorFinder {
+	/**
+	 * Clears positions with x == 0 after shifting toward +x.
+	 */
+	private static final long X_LOW_MASK = 0xFFFEFFFEFFFEFFFEL;
+
+	/**
+	 * Clears positions with x == 15 after shifting toward -x.
+	 */
+	private static final long X_HIGH_MASK = 0x7FFF7FFF7FFF7FFFL;
+
+	private final long[] reach = new long[INTERIOR_CACHE_WORDS];
+
+	/**
+	 * @param bits Interior closed flags starting at index 0. Words starting at
+	 * {@code visibleIndex} must hold seed positions and receive the result.
+	 */
+	public void find(long[] bits, int visibleIndex) {
+		final long[] reach = this.reach;
+
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+			reach[i] = bits[visibleIndex + i] & ~bits[i];
+		}
+
+		// alternate directions so long winding spaces converge in a few passes
+		boolean changed;
+
+		do {
+			changed = false;
+
+			for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+				changed |= spread(bits, i);
+			}
+
+			for (int i = INTERIOR_CACHE_WORDS - 1; i >= 0; --i) {
+				changed |= spread(bits, i);
+			}
+		} while (changed);
+
+		// closed positions next to reachable space are visible also
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+			bits[visibleIndex + i] |= reach[i] | neighbors(i);
+		}
+	}
+
+	private static long inWordNeighbors(long r) {
+		return ((r << 1) & X_LOW_MASK) | ((r >>> 1) & X_HIGH_MASK) | (r << 16) | (r >>> 16);
+	}
+
+	private long neighbors(int wordIndex) {
+		final long[] reach = this.reach;
+		long result = inWordNeighbors(reach[wordIndex]);
+		final int sliceWord = wordIndex & 3;
+
+		if (sliceWord != 0) {
+			result |= reach[wordIndex - 1] >>> 48;
+		}
+
+		if (sliceWord != 3) {
+			result |= reach[wordIndex + 1] << 48;
+		}
+
+		if (wordIndex >= 4) {
+			result |= reach[wordIndex - 4];
+		}
+
+		if (wordIndex < INTERIOR_CACHE_WORDS - 4) {
+			result |= reach[wordIndex + 4];
+		}
+
+		return result;
+	}
+
+	/**
+	 * Grows reachable space in one word from its neighbors and returns true if it changed.
+	 */
+	private boolean spread(long[] bits, int wordIndex) {
+		final long open = ~bits[wordIndex];
+		long r = reach[wordIndex];
+		long grown = (r | neighbors(wordIndex)) & open;
+
+		if (grown == r) {
+			return false;
+		}
+
+		// fill the word before moving on so runs along x and y don't need extra passes
+		do {
+			r = grown;
+			grown = (r | inWordNeighbors(r)) & open;
+		} while (grown != r);
+
+		reach[wordIndex] = r;
+		return true;
+	}
+}
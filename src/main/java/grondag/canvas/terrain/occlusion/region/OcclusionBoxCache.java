@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019, 2020 grondag
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package grondag.canvas.terrain.occlusion.region;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+import static grondag.canvas.terrain.RenderRegionAddressHelper.INTERIOR_CACHE_WORDS;
+
+/**
+ * Remembers occlusion boxes found for closed-voxel masks seen before.
+ * Many regions have identical masks (solid stone, ocean floor, repeated builds)
+ * and box finding is the slowest part of occlusion baking.
+ *
+ * <p>Keyed by a 64-bit hash of the mask. The full mask is kept with each entry
+ * and compared on lookup, so a hash collision is only a miss.  Each shard
+ * is a small LRU map with its own lock to limit contention between workers.
+ */
+public final class OcclusionBoxCache {
+	private static final int SHARD_BITS = 4;
+	private static final int SHARD_COUNT = 1 << SHARD_BITS;
+	private static final int SHARD_MASK = SHARD_COUNT - 1;
+	private static final int SHARD_CAPACITY = 128;
+
+	private static final int[] NO_BOXES = new int[0];
+
+	private static final Shard[] SHARDS = new Shard[SHARD_COUNT];
+	private static final LongAdder HITS = new LongAdder();
+	private static final LongAdder MISSES = new LongAdder();
+
+	/**
+	 * Boxes for a fully closed mask. Found on first use, never evicted.
+	 */
+	private static volatile int[] fullBoxes = null;
+
+	static {
+		for (int i = 0; i < SHARD_COUNT; ++i) {
+			SHARDS[i] = new Shard();
+		}
+	}
+
+	private OcclusionBoxCache() { }
+
+	/**
+	 * Occlusion boxes for the interior closed bits at the start of {@code bits}, using
+	 * the given finder only if the mask has not been seen recently. Result must not be modified.
+	 */
+	static int[] findBoxes(BoxFinder boxFinder, long[] bits) {
+		long hash = 0;
+		long any = 0;
+		long all = -1L;
+
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+			final long w = bits[i];
+			any |= w;
+			all &= w;
+			hash = HashCommon.mix(hash + w) + i;
+		}
+
+		// nothing closed - same box list as EMPTY_CULL_DATA
+		if (any == 0) {
+			HITS.increment();
+			return NO_BOXES;
+		}
+
+		if (all == -1L) {
+			int[] result = fullBoxes;
+
+			if (result == null) {
+				MISSES.increment();
+				result = find(boxFinder, bits);
+				fullBoxes = result;
+			} else {
+				HITS.increment();
+			}
+
+			return result;
+		}
+
+		final Shard shard = SHARDS[(int) (hash >>> (64 - SHARD_BITS)) & SHARD_MASK];
+		int[] result = shard.get(hash, bits);
+
+		if (result == null) {
+			MISSES.increment();
+			// find outside the lock - concurrent misses on the same mask do duplicate work but store the same result
+			result = find(boxFinder, bits);
+			shard.put(hash, bits, result);
+		} else {
+			HITS.increment();
+		}
+
+		return result;
+	}
+
+	private static int[] find(BoxFinder boxFinder, long[] bits) {
+		boxFinder.findBoxes(bits, 0);
+		return boxFinder.boxes.isEmpty() ? NO_BOXES : boxFinder.boxes.toIntArray();
+	}
+
+	public static String debugString() {
+		final long hits = HITS.sum();
+		final long total = hits + MISSES.sum();
+		return String.format("Occlusion box cache hits: %d of %d (%d%%)", hits, total, total == 0 ? 0 : hits * 100 / total);
+	}
+
+	private static class Entry {
+		final long[] mask;
+		final int[] boxes;
+
+		Entry(long[] mask, int[] boxes) {
+			this.mask = mask;
+			this.boxes = boxes;
+		}
+
+		boolean matches(long[] bits) {
+			final long[] mask = this.mask;
+
+			for (int i = 0; i < INTERIOR_CACHE_WORDS; ++i) {
+				if (mask[i] != bits[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+
+	private static class Shard {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Long2ObjectLinkedOpenHashMap<Entry> map = new Long2ObjectLinkedOpenHashMap<>(SHARD_CAPACITY + 1);
+
+		int[] get(long hash, long[] bits) {
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				final Entry entry = map.getAndMoveToLast(hash);
+				return entry != null && entry.matches(bits) ? entry.boxes : null;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void put(long hash, long[] bits, int[] boxes) {
+			final long[] mask = new long[INTERIOR_CACHE_WORDS];
+			System.arraycopy(bits, 0, mask, 0, INTERIOR_CACHE_WORDS);
+			final Entry entry = new Entry(mask, boxes);
+			final ReentrantLock lock = this.lock;
+			lock.lock();
+
+			try {
+				map.putAndMoveToLast(hash, entry);
+
+				if (map.size() > SHARD_CAPACITY) {
+					map.removeFirst();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -16,8 +16,6 @@
 
 package grondag.canvas.terrain.occlusion.region;
 
-import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.minecraft.block.BlockRenderType;
 import net.minecraft.block.BlockState;
 
@@ -58,7 +56,7 @@ public abstract class OcclusionRegion {
 	}
 
 	public final BoxFinder boxFinder = new BoxFinder(new AreaFinder());
-	private final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+	private final ExteriorFinder exteriorFinder = new ExteriorFinder();
 	private final long[] bits = new long[WORD_COUNT];
 	private int openCount;
 	private int minRenderableX;
@@ -78,6 +76,21 @@ public abstract class OcclusionRegion {
 		captureInterior();
 	}
 
+	/**
+	 * Copies results of {@link #prepare()} and {@link #build(boolean)} from another instance
+	 * so that both can serve visibility queries for the same region.
+	 */
+	public void copyFrom(OcclusionRegion source) {
+		System.arraycopy(source.bits, 0, bits, 0, WORD_COUNT);
+		openCount = source.openCount;
+		minRenderableX = source.minRenderableX;
+		minRenderableY = source.minRenderableY;
+		minRenderableZ = source.minRenderableZ;
+		maxRenderableX = source.maxRenderableX;
+		maxRenderableY = source.maxRenderableY;
+		maxRenderableZ = source.maxRenderableZ;
+	}
+
 	protected abstract BlockState blockStateAtIndex(int index);
 
 	protected abstract boolean closedAtRelativePos(BlockState blockState, int x, int y, int z);
@@ -90,6 +103,13 @@ public abstract class OcclusionRegion {
 		return (bits[(interiorIndex >> 6) + RENDERABLE_OFFSET] & (1L << (interiorIndex & 63))) != 0;
 	}
 
+	/**
+	 * Renderable flags for 64 interior positions starting at wordIndex * 64.
+	 */
+	public long renderableWord(int wordIndex) {
+		return bits[wordIndex + RENDERABLE_OFFSET];
+	}
+
 	protected void setVisibility(int index, boolean isRenderable, boolean isClosed) {
 		final long mask = (1L << (index & 63));
 		final int baseIndex = index >> 6;
@@ -180,24 +200,6 @@ public abstract class OcclusionRegion {
 		bits[(index >> 6) + EXTERIOR_VISIBLE_OFFSET] |= (1L << (index & 63));
 	}
 
-	// interior, not opaque and not already visited
-	private boolean canVisit(int index) {
-		// can't visit outside central chunk
-		if (index >= INTERIOR_CACHE_SIZE) {
-			return false;
-		}
-
-		final int baseIndex = index >> 6;
-		final long mask = 1L << (index & 63);
-
-		if ((bits[baseIndex + EXTERIOR_VISIBLE_OFFSET] & mask) == 0) {
-			bits[baseIndex + EXTERIOR_VISIBLE_OFFSET] |= mask;
-			return (bits[baseIndex] & mask) == 0;
-		} else {
-			return false;
-		}
-	}
-
 	private void clearInteriorRenderable(int x, int y, int z) {
 		final int index = interiorIndex(x, y, z);
 		bits[(index >> 6) + RENDERABLE_OFFSET] &= ~(1L << (index & 63));
@@ -277,20 +279,12 @@ public abstract class OcclusionRegion {
 	 * Should not be called if camera may be inside the chunk!
 	 */
 	private void hideInteriorClosedPositions() {
-		for (int i = 0; i < INTERIOR_CACHE_SIZE; i++) {
-			// PERF: iterate by word vs recomputing mask each time
-			final long mask = (1L << (i & 63));
-			final int wordIndex = (i >> 6);
-
-			final int x = i & 0xF;
-			final int y = (i >> 4) & 0xF;
-			final int z = (i >> 8) & 0xF;
-
-			if ((bits[wordIndex + EXTERIOR_VISIBLE_OFFSET] & mask) == 0 && x != 0 && y != 0 && z != 0 && x != 15 && y != 15 && z != 15) {
-				bits[wordIndex + RENDERABLE_OFFSET] &= ~mask;
-				// mark it opaque
-				bits[wordIndex] |= mask;
-			}
+		for (int i = 0; i < INTERIOR_CACHE_WORDS; i++) {
+			// surface positions are never hidden
+			final long hidden = ~bits[i + EXTERIOR_VISIBLE_OFFSET] & ~EXTERIOR_MASK[i];
+			bits[i + RENDERABLE_OFFSET] &= ~hidden;
+			// mark it opaque
+			bits[i] |= hidden;
 		}
 	}
 
@@ -364,45 +358,40 @@ public abstract class OcclusionRegion {
 		maxRenderableZ = maxZ < minZ ? minZ : maxZ;
 	}
 
-	private void visitSurfaceIfPossible(int x, int y, int z) {
-		final int index = interiorIndex(x, y, z);
-
-		if (canVisit(index)) {
-			fill(index);
-		}
-	}
-
 	private int[] computeOcclusion(boolean isNear) {
 		// determine which blocks are visible
-
+		// seed with surface positions that have an open neighbor outside the region
 		for (int i = 0; i < 16; i++) {
 			for (int j = 0; j < 16; j++) {
 				if (!isClosed(localXfaceIndex(false, i, j))) {
-					visitSurfaceIfPossible(0, i, j);
+					setVisited(interiorIndex(0, i, j));
 				}
 
 				if (!isClosed(localXfaceIndex(true, i, j))) {
-					visitSurfaceIfPossible(15, i, j);
+					setVisited(interiorIndex(15, i, j));
 				}
 
 				if (!isClosed(localZfaceIndex(i, j, false))) {
-					visitSurfaceIfPossible(i, j, 0);
+					setVisited(interiorIndex(i, j, 0));
 				}
 
 				if (!isClosed(localZfaceIndex(i, j, true))) {
-					visitSurfaceIfPossible(i, j, 15);
+					setVisited(interiorIndex(i, j, 15));
 				}
 
 				if (!isClosed(localYfaceIndex(i, false, j))) {
-					visitSurfaceIfPossible(i, 0, j);
+					setVisited(interiorIndex(i, 0, j));
 				}
 
 				if (!isClosed(localYfaceIndex(i, true, j))) {
-					visitSurfaceIfPossible(i, 15, j);
+					setVisited(interiorIndex(i, 15, j));
 				}
 			}
 		}
 
+		// flood fill works on whole words - much faster than a queue in regions with large caves
+		exteriorFinder.find(bits, EXTERIOR_VISIBLE_OFFSET);
+
 		// don't hide inside position if we may be inside the chunk!
 		if (!isNear) {
 			hideInteriorClosedPositions();
@@ -410,22 +399,11 @@ public abstract class OcclusionRegion {
 
 		computeRenderableBounds();
 
-		final BoxFinder boxFinder = this.boxFinder;
-		final IntArrayList boxes = boxFinder.boxes;
-
-		boxFinder.findBoxes(bits, 0);
-
-		final int boxCount = boxes.size();
-
+		// identical masks are common so boxes are usually found in cache
+		final int[] boxes = OcclusionBoxCache.findBoxes(boxFinder, bits);
+		final int boxCount = boxes.length;
 		final int[] result = new int[boxCount + 1];
-
-		int n = OcclusionRegion.CULL_DATA_FIRST_BOX;
-
-		if (boxCount > 0) {
-			for (int i = 0; i < boxCount; i++) {
-				result[n++] = boxes.getInt(i);
-			}
-		}
+		System.arraycopy(boxes, 0, result, CULL_DATA_FIRST_BOX, boxCount);
 
 		if (minRenderableX == Integer.MAX_VALUE) {
 			result[CULL_DATA_REGION_BOUNDS] = PackedBox.EMPTY_BOX;
@@ -460,57 +438,4 @@ public abstract class OcclusionRegion {
 			return computeOcclusion(isNear);
 		}
 	}
-
-	private void fill(int xyz4) {
-		final int faceBits = 0;
-		setVisited(xyz4);
-		visit(xyz4, faceBits);
-
-		while (!queue.isEmpty()) {
-			final int nextXyz4 = queue.dequeueInt();
-			visit(nextXyz4, faceBits);
-		}
-	}
-
-	private void visit(int xyz4, int faceBits) {
-		final int x = xyz4 & 0xF;
-
-		if (x == 0) {
-			enqueIfUnvisited(xyz4 + 1);
-		} else if (x == 15) {
-			enqueIfUnvisited(xyz4 - 1);
-		} else {
-			enqueIfUnvisited(xyz4 - 1);
-			enqueIfUnvisited(xyz4 + 1);
-		}
-
-		final int y = xyz4 & 0xF0;
-
-		if (y == 0) {
-			enqueIfUnvisited(xyz4 + 0x10);
-		} else if (y == 0xF0) {
-			enqueIfUnvisited(xyz4 - 0x10);
-		} else {
-			enqueIfUnvisited(xyz4 - 0x10);
-			enqueIfUnvisited(xyz4 + 0x10);
-		}
-
-		final int z = xyz4 & 0xF00;
-
-		if (z == 0) {
-			enqueIfUnvisited(xyz4 + 0x100);
-		} else if (z == 0xF00) {
-			enqueIfUnvisited(xyz4 - 0x100);
-		} else {
-			enqueIfUnvisited(xyz4 - 0x100);
-			enqueIfUnvisited(xyz4 + 0x100);
-		}
-	}
-
-	private void enqueIfUnvisited(int xyz4) {
-		if (canVisit(xyz4)) {
-			setVisited(xyz4);
-			queue.enqueue(xyz4);
-		}
-	}
 }
@@ -47,4 +47,11 @@ public class UploadableChunk {
 		vboBuffer.upload();
 		return drawable;
 	}
+
+	/**
+	 * Releases buffers without uploading, for uploads that are no longer wanted.
+	 */
+	public void close() {
+		drawable.close();
+	}
 }
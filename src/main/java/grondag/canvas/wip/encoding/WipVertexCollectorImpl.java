@@ -19,9 +19,9 @@ package grondag.canvas.wip.encoding;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 
-import com.google.common.primitives.Doubles;
 import com.mojang.blaze3d.platform.GlStateManager;
 import grondag.canvas.buffer.TransferBufferAllocator;
+import grondag.canvas.buffer.encoding.QuadSorter;
 import grondag.canvas.material.MaterialVertexFormats;
 import grondag.canvas.wip.state.RenderContextState;
 import grondag.canvas.wip.state.WipRenderMaterial;
@@ -29,13 +29,9 @@ import grondag.canvas.wip.state.WipRenderState;
 import grondag.canvas.wip.state.property.WipTransparency;
 import grondag.fermion.intstream.IntStreamProvider;
 import grondag.fermion.intstream.IntStreamProvider.IntStreamImpl;
-import it.unimi.dsi.fastutil.Swapper;
-import it.unimi.dsi.fastutil.ints.IntComparator;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.lwjgl.system.MemoryUtil;
 
-import net.minecraft.util.math.MathHelper;
-
 public class WipVertexCollectorImpl extends WipAbstractVertexCollector {
 	private final IntStreamImpl data = INT_STREAM_PROVIDER.claim();
 	private int integerSize = 0;
@@ -102,41 +98,11 @@ public class WipVertexCollectorImpl extends WipAbstractVertexCollector {
 	}
 
 	public void sortQuads(double x, double y, double z) {
-		quadSorter.get().doSort(this, x, y, z);
+		perQuadDistance = QuadSorter.get().sort(data, quadCount(), MaterialVertexFormats.MATERIAL_VERTEX_STRIDE, x, y, z, perQuadDistance);
 		sortReadIndex = 0;
 		sortMaxIndex = quadCount();
 	}
 
-	private double getDistanceSq(double x, double y, double z, int integerStride, int vertexIndex) {
-		// unpack vertex coordinates
-		int i = vertexIndex * integerStride * 4;
-		final double x0 = Float.intBitsToFloat(data.get(i));
-		final double y0 = Float.intBitsToFloat(data.get(i + 1));
-		final double z0 = Float.intBitsToFloat(data.get(i + 2));
-
-		i += integerStride;
-		final double x1 = Float.intBitsToFloat(data.get(i));
-		final double y1 = Float.intBitsToFloat(data.get(i + 1));
-		final double z1 = Float.intBitsToFloat(data.get(i + 2));
-
-		i += integerStride;
-		final double x2 = Float.intBitsToFloat(data.get(i));
-		final double y2 = Float.intBitsToFloat(data.get(i + 1));
-		final double z2 = Float.intBitsToFloat(data.get(i + 2));
-
-		i += integerStride;
-		final double x3 = Float.intBitsToFloat(data.get(i));
-		final double y3 = Float.intBitsToFloat(data.get(i + 1));
-		final double z3 = Float.intBitsToFloat(data.get(i + 2));
-
-		// compute average distance by component
-		final double dx = (x0 + x1 + x2 + x3) * 0.25 - x;
-		final double dy = (y0 + y1 + y2 + y3) * 0.25 - y;
-		final double dz = (z0 + z1 + z2 + z3) * 0.25 - z;
-
-		return dx * dx + dy * dy + dz * dz;
-	}
-
 	/**
 	 * Index of first quad that will be referenced by {@link #unpackUntilDistance(double)}
 	 */
@@ -252,68 +218,6 @@ public class WipVertexCollectorImpl extends WipAbstractVertexCollector {
 		WipRenderState.disable();
 	}
 
-	private static class QuadSorter {
-		double[] perQuadDistance = new double[512];
-
-		private final IntComparator comparator = new IntComparator() {
-			@Override
-			public int compare(int a, int b) {
-				return Doubles.compare(perQuadDistance[b], perQuadDistance[a]);
-			}
-		};
-
-		int[] quadSwap = new int[128];
-		IntStreamImpl data;
-		int quadIntStride;
-
-		private final Swapper swapper = new Swapper() {
-			@Override
-			public void swap(int a, int b) {
-				final double distSwap = perQuadDistance[a];
-				perQuadDistance[a] = perQuadDistance[b];
-				perQuadDistance[b] = distSwap;
-
-				data.copyTo(a * quadIntStride, quadSwap, 0, quadIntStride);
-				data.copyFromDirect(a * quadIntStride, data, b * quadIntStride, quadIntStride);
-				data.copyFrom(b * quadIntStride, quadSwap, 0, quadIntStride);
-			}
-		};
-
-		private void doSort(WipVertexCollectorImpl caller, double x, double y, double z) {
-			data = caller.data;
-
-			final int quadCount = caller.vertexCount() / 4;
-
-			if (perQuadDistance.length < quadCount) {
-				perQuadDistance = new double[MathHelper.smallestEncompassingPowerOfTwo(quadCount)];
-			}
-
-			if (quadSwap.length < quadIntStride) {
-				quadSwap = new int[MathHelper.smallestEncompassingPowerOfTwo(quadIntStride)];
-			}
-
-			for (int j = 0; j < quadCount; ++j) {
-				perQuadDistance[j] = caller.getDistanceSq(x, y, z, MaterialVertexFormats.MATERIAL_VERTEX_STRIDE, j);
-			}
-
-			// sort the indexes by distance - farthest first
-			it.unimi.dsi.fastutil.Arrays.quickSort(0, quadCount, comparator, swapper);
-
-			if (caller.perQuadDistance == null || caller.perQuadDistance.length < quadCount) {
-				caller.perQuadDistance = new double[perQuadDistance.length];
-			}
-
-			System.arraycopy(perQuadDistance, 0, caller.perQuadDistance, 0, quadCount);
-		}
-	}
-
-	private static final ThreadLocal<QuadSorter> quadSorter = new ThreadLocal<QuadSorter>() {
-		@Override
-		protected QuadSorter initialValue() {
-			return new QuadSorter();
-		}
-	};
-
 	// WIP2: confirm parameters after integrating terrain
 	public static final IntStreamProvider INT_STREAM_PROVIDER = new IntStreamProvider(4096, 16, 4096);
 
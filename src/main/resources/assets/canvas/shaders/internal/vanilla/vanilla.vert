@@ -21,8 +21,15 @@ attribute vec4 in_lightmap;
 attribute vec2 in_material;
 
 void main() {
+#ifdef _CV_COMPACT_VERTEX
+	// position comes in as fixed point
+	vec4 inVertex = vec4(gl_Vertex.xyz / _CV_COMPACT_POSITION_SCALE, 1.0);
+#else
+	vec4 inVertex = gl_Vertex;
+#endif
+
 	frx_VertexData data = frx_VertexData(
-	gl_Vertex,
+	inVertex,
 	in_uv,
 	in_color,
 	in_normal_ao.xyz,
@@ -8,6 +8,10 @@
 #define _CV_ATLAS_WIDTH 1024.0
 #define _CV_ATLAS_HEIGHT 1024.0
 
+// enabled for solid terrain when positions are 16-bit fixed point
+//#define _CV_COMPACT_VERTEX
+#define _CV_COMPACT_POSITION_SCALE 64.0
+
 vec2 _cv_textureCoord(vec2 coordIn, int matrixIndex) {
 	vec4 temp = gl_TextureMatrix[matrixIndex] * coordIn.xyxy;
 	return temp.xy;
@@ -0,0 +1,28 @@
+package grondag.canvas;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.terrain.RenderRegionStorage;
+
+class DirtySubcubeTest {
+
+	@Test
+	void test() {
+		// interior block: only sub-cubes within one block of it
+		long mask = RenderRegionStorage.dirtySubcubes(0, 0, 0, 5, 5, 5, 5, 5, 5);
+		assert mask != -1L;
+		assert Long.bitCount(mask) == 1;
+
+		// block on a sub-cube corner touches the eight sub-cubes around it
+		mask = RenderRegionStorage.dirtySubcubes(0, 0, 0, 4, 4, 4, 4, 4, 4);
+		assert Long.bitCount(mask) == 8;
+
+		// neighbor region only gets the sub-cube at the shared corner
+		mask = RenderRegionStorage.dirtySubcubes(-16, -16, -16, 0, 0, 0, 0, 0, 0);
+		assert mask == 1L << (3 | (3 << 2) | (3 << 4));
+
+		// a box spanning the whole region dirties everything
+		mask = RenderRegionStorage.dirtySubcubes(16, 0, 16, 16, 0, 16, 31, 15, 31);
+		assert mask == -1L;
+	}
+}
@@ -0,0 +1,146 @@
+package grondag.canvas;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.terrain.occlusion.region.ExteriorFinder;
+
+class ExteriorFinderTest {
+	static final int WORDS = 64;
+
+	final ExteriorFinder finder = new ExteriorFinder();
+	final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+
+	/** closed flags in first 64 words, visible flags in second 64 */
+	final long[] expected = new long[WORDS * 2];
+	final long[] actual = new long[WORDS * 2];
+
+	@Test
+	void test() {
+		// all open, all surface seeded
+		seedSurface(new Random(0), 1f);
+		check();
+
+		// all closed
+		Arrays.fill(expected, 0, WORDS, -1L);
+		seedSurface(new Random(1), 1f);
+		check();
+
+		// no seeds - nothing visible
+		Arrays.fill(expected, 0);
+		check();
+
+		final Random r = new Random(42);
+
+		for (int i = 0; i < 500; i++) {
+			Arrays.fill(expected, 0);
+			final float closedChance = r.nextFloat();
+
+			for (int index = 0; index < 4096; index++) {
+				if (r.nextFloat() < closedChance) {
+					expected[index >> 6] |= (1L << (index & 63));
+				}
+			}
+
+			seedSurface(r, r.nextFloat());
+			check();
+		}
+
+		// hollow box with a single opening - fill must wind through the whole shell
+		Arrays.fill(expected, 0);
+
+		for (int index = 0; index < 4096; index++) {
+			final int x = index & 15;
+			final int y = (index >> 4) & 15;
+			final int z = (index >> 8) & 15;
+
+			if ((x == 1 || x == 14 || y == 1 || y == 14 || z == 1 || z == 14) && x > 0 && x < 15 && y > 0 && y < 15 && z > 0 && z < 15) {
+				expected[index >> 6] |= (1L << (index & 63));
+			}
+		}
+
+		final int hole = 1 | (7 << 4) | (7 << 8);
+		expected[hole >> 6] &= ~(1L << (hole & 63));
+		final int seed = 0 | (7 << 4) | (7 << 8);
+		expected[WORDS + (seed >> 6)] |= (1L << (seed & 63));
+		check();
+	}
+
+	void seedSurface(Random r, float chance) {
+		for (int index = 0; index < 4096; index++) {
+			final int x = index & 15;
+			final int y = (index >> 4) & 15;
+			final int z = (index >> 8) & 15;
+
+			if ((x == 0 || x == 15 || y == 0 || y == 15 || z == 0 || z == 15) && r.nextFloat() < chance) {
+				expected[WORDS + (index >> 6)] |= (1L << (index & 63));
+			}
+		}
+	}
+
+	void check() {
+		System.arraycopy(expected, 0, actual, 0, WORDS * 2);
+		finder.find(actual, WORDS);
+		referenceFill();
+		assert Arrays.equals(expected, actual);
+	}
+
+	/**
+	 * Queue-based fill formerly used by OcclusionRegion.
+	 */
+	void referenceFill() {
+		final long[] seeds = Arrays.copyOfRange(expected, WORDS, WORDS * 2);
+		Arrays.fill(expected, WORDS, WORDS * 2, 0);
+
+		for (int index = 0; index < 4096; index++) {
+			if ((seeds[index >> 6] & (1L << (index & 63))) != 0 && canVisit(index)) {
+				setVisited(index);
+				visit(index);
+
+				while (!queue.isEmpty()) {
+					visit(queue.dequeueInt());
+				}
+			}
+		}
+	}
+
+	void setVisited(int index) {
+		expected[(index >> 6) + WORDS] |= (1L << (index & 63));
+	}
+
+	boolean canVisit(int index) {
+		final int baseIndex = index >> 6;
+		final long mask = 1L << (index & 63);
+
+		if ((expected[baseIndex + WORDS] & mask) == 0) {
+			expected[baseIndex + WORDS] |= mask;
+			return (expected[baseIndex] & mask) == 0;
+		} else {
+			return false;
+		}
+	}
+
+	void visit(int xyz4) {
+		final int x = xyz4 & 0xF;
+		if (x != 0) enqueIfUnvisited(xyz4 - 1);
+		if (x != 15) enqueIfUnvisited(xyz4 + 1);
+
+		final int y = xyz4 & 0xF0;
+		if (y != 0) enqueIfUnvisited(xyz4 - 0x10);
+		if (y != 0xF0) enqueIfUnvisited(xyz4 + 0x10);
+
+		final int z = xyz4 & 0xF00;
+		if (z != 0) enqueIfUnvisited(xyz4 - 0x100);
+		if (z != 0xF00) enqueIfUnvisited(xyz4 + 0x100);
+	}
+
+	void enqueIfUnvisited(int xyz4) {
+		if (canVisit(xyz4)) {
+			setVisited(xyz4);
+			queue.enqueue(xyz4);
+		}
+	}
+}
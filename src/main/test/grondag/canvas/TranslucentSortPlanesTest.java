@@ -0,0 +1,68 @@
+package grondag.canvas;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.terrain.TranslucentSortPlanes;
+
+class TranslucentSortPlanesTest {
+	private static final int STRIDE = 3;
+
+	@Test
+	void test() {
+		// horizontal quad at y = 0.9 and vertical quad at x = 0.5, separated along z
+		final float[][] a = {{0, 0.9f, 0}, {1, 0.9f, 0}, {1, 0.9f, 1}, {0, 0.9f, 1}};
+		final float[][] b = {{0.5f, 0, 3}, {0.5f, 1, 3}, {0.5f, 1, 4}, {0.5f, 0, 4}};
+		final int[] data = pack(a, b);
+
+		final TranslucentSortPlanes planes = TranslucentSortPlanes.of(data, STRIDE);
+		assert planes != null;
+
+		// camera moves along z only, staying on the same side of both quad planes
+		final float[] p1 = {0.5f, 2, -5};
+		final float[] p2 = {0.5f, 2, 10};
+
+		// quad order flips
+		assert distanceSq(a, p1) < distanceSq(b, p1);
+		assert distanceSq(a, p2) > distanceSq(b, p2);
+
+		// so the camera must have changed cells
+		assert planes.cell(p1[0], p1[1], p1[2]) != planes.cell(p2[0], p2[1], p2[2]);
+
+		// small moves that cross no extent keep the same cell
+		assert planes.cell(p1[0], p1[1], p1[2]) == planes.cell(p1[0], p1[1] + 1, p1[2] - 1);
+
+		// quads that aren't axis-aligned always resort
+		final float[][] c = {{0, 0, 0}, {1, 1, 0}, {1, 1, 1}, {0, 0, 1}};
+		assert TranslucentSortPlanes.of(pack(a, c), STRIDE) == null;
+	}
+
+	private static int[] pack(float[][]... quads) {
+		final int[] result = new int[quads.length * 4 * STRIDE];
+		int i = 0;
+
+		for (final float[][] quad : quads) {
+			for (final float[] v : quad) {
+				for (final float f : v) {
+					result[i++] = Float.floatToRawIntBits(f);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static float distanceSq(float[][] quad, float[] p) {
+		float x = 0, y = 0, z = 0;
+
+		for (final float[] v : quad) {
+			x += v[0];
+			y += v[1];
+			z += v[2];
+		}
+
+		x = x * 0.25f - p[0];
+		y = y * 0.25f - p[1];
+		z = z * 0.25f - p[2];
+		return x * x + y * y + z * z;
+	}
+}